@@ -0,0 +1,139 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.AsyncEventBus;
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakAllowConcurrentEvents;
+import com.raelity.lib.eventbus.WeakEventBus;
+import com.raelity.lib.eventbus.WeakSubscribe;
+
+/**
+ * Events per second through a weak receiver on an AsyncEventBus,
+ * for 1 to N cores; virtual threads, from
+ * {@link WeakEventBus#newVirtualThreadEventBus}, compared with a
+ * fixed pool of platform threads. Each event does a little work.
+ * <p>
+ * For virtual threads, the number of cores is the scheduler's
+ * parallelism; it is set before the first virtual thread is created,
+ * each set of parameters runs in its own fork. Before Java 21 the
+ * "virtual" executor is the platform thread fallback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncBenchmark {
+    static final int EVENTS = 1000;
+
+    @Param({"virtual", "platform"})
+    String executor;
+
+    @Param({"1", "2", "4", "8"})
+    int cores;
+
+    @Param({"100"})
+    int work;
+
+    EventBus eventBus;
+    ExecutorService platform;
+    AsyncReceiver keep;
+
+    /** Receiver with a concurrent and a serial method. */
+    public static class AsyncReceiver {
+        final int work;
+        volatile CountDownLatch done;
+        AsyncReceiver(int work) { this.work = work; }
+
+        @WeakSubscribe
+        @WeakAllowConcurrentEvents
+        public void concurrent(Receivers.ConcurrentEvent ev) {
+            Blackhole.consumeCPU(work);
+            done.countDown();
+        }
+
+        @WeakSubscribe
+        public void serial(Receivers.SerialEvent ev) {
+            Blackhole.consumeCPU(work);
+            done.countDown();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        if (executor.equals("virtual")) {
+            System.setProperty("jdk.virtualThreadScheduler.parallelism",
+                               String.valueOf(cores));
+            eventBus = WeakEventBus.newVirtualThreadEventBus("bench");
+        } else {
+            platform = Executors.newFixedThreadPool(cores);
+            eventBus = new AsyncEventBus("bench", platform);
+        }
+        keep = new AsyncReceiver(work);
+        WeakEventBus.register(keep, eventBus);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (platform != null)
+            platform.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void concurrent() throws InterruptedException {
+        keep.done = new CountDownLatch(EVENTS);
+        Receivers.ConcurrentEvent ev = new Receivers.ConcurrentEvent(42);
+        for (int i = 0; i < EVENTS; i++)
+            eventBus.post(ev);
+        keep.done.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void serial() throws InterruptedException {
+        keep.done = new CountDownLatch(EVENTS);
+        Receivers.SerialEvent ev = new Receivers.SerialEvent(42);
+        for (int i = 0; i < EVENTS; i++)
+            eventBus.post(ev);
+        keep.done.await();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the JMH command line, and always
+ * add the GC profiler; allocation per operation is reported
+ * as "gc.alloc.rate.norm".
+ * <pre>
+ *   java -jar target/benchmarks.jar [JMH options] [benchmark regex]
+ * </pre>
+ */
+public class BenchMain {
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+
+import com.raelity.play.event.bus.bench.Receivers.SerialEvent;
+import com.raelity.play.event.bus.bench.Receivers.WeakReceiver;
+
+/**
+ * The time from dropping many weak receivers to their weak proxies
+ * all being unregistered from the EventBus. Includes the time for
+ * the garbage collection.
+ * <p>
+ * Completion is detected by posting an event; when it becomes a
+ * {@link DeadEvent} there are no subscribers left.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CollectionBenchmark {
+    @Param({"100", "1000", "10000"})
+    int receivers;
+
+    EventBus eventBus;
+    List<WeakReceiver> keep;
+    SerialEvent ev = new SerialEvent(42);
+    volatile boolean dead;
+
+    @Subscribe
+    public void deadEvent(DeadEvent ev) {
+        dead = true;
+    }
+
+    @Setup(Level.Invocation)
+    public void setup(Blackhole bh) {
+        eventBus = new EventBus();
+        eventBus.register(this);
+        keep = new ArrayList<>(receivers);
+        for (int i = 0; i < receivers; i++) {
+            WeakReceiver br = new WeakReceiver(bh);
+            keep.add(br);
+            WeakEventBus.register(br, eventBus);
+        }
+        dead = false;
+    }
+
+    @Benchmark
+    public void collect() throws InterruptedException {
+        keep = null;
+        System.gc();
+        while (true) {
+            eventBus.post(ev);
+            if (dead)
+                break;
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+
+import com.raelity.play.event.bus.bench.Receivers.ConcurrentEvent;
+import com.raelity.play.event.bus.bench.Receivers.SerialEvent;
+import com.raelity.play.event.bus.bench.Receivers.StrongReceiver;
+import com.raelity.play.event.bus.bench.Receivers.WeakReceiver;
+
+/**
+ * Multi-threaded posting to one receiver. A {@code @WeakAllowConcurrentEvents}
+ * method is invoked in parallel; without it the EventBus serializes
+ * the calls. Compared with the equivalent plain Guava receivers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ConcurrentDispatchBenchmark {
+    EventBus strongBus;
+    EventBus weakBus;
+    WeakReceiver keep;
+    SerialEvent serialEv = new SerialEvent(42);
+    ConcurrentEvent concurrentEv = new ConcurrentEvent(42);
+
+    @Setup
+    public void setup(Blackhole bh) {
+        strongBus = new EventBus();
+        strongBus.register(new StrongReceiver(bh));
+        weakBus = new EventBus();
+        keep = new WeakReceiver(bh);
+        WeakEventBus.register(keep, weakBus);
+    }
+
+    @Benchmark
+    public void strongConcurrent() {
+        strongBus.post(concurrentEv);
+    }
+
+    @Benchmark
+    public void strongSerial() {
+        strongBus.post(serialEv);
+    }
+
+    @Benchmark
+    public void weakConcurrent() {
+        weakBus.post(concurrentEv);
+    }
+
+    @Benchmark
+    public void weakSerial() {
+        weakBus.post(serialEv);
+    }
+}
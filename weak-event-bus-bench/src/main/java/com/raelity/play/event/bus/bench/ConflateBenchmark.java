@@ -0,0 +1,136 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.AsyncEventBus;
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakConflate;
+import com.raelity.lib.eventbus.WeakEventBus;
+import com.raelity.lib.eventbus.WeakSubscribe;
+
+/**
+ * A burst of progress events to a receiver that redraws for each one:
+ * the time until the receiver has seen the last event. Every event
+ * queued and delivered by an AsyncEventBus, compared with a
+ * {@link WeakConflate} method that only gets the latest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConflateBenchmark {
+    @Param({"1000"})
+    int burst;
+
+    @Param({"1000"})
+    int redraw;
+
+    EventBus asyncBus;
+    EventBus conflateBus;
+    ExecutorService executor;
+    QueuedReceiver queued;
+    ConflateReceiver conflated;
+
+    /** Progress event. */
+    public static final class Progress {
+        final int value;
+        Progress(int value) { this.value = value; }
+    }
+
+    /** Redraws for every event. */
+    public static class QueuedReceiver {
+        final int redraw;
+        volatile int latest;
+        QueuedReceiver(int redraw) { this.redraw = redraw; }
+
+        @WeakSubscribe
+        public void progress(Progress ev) {
+            Blackhole.consumeCPU(redraw);
+            latest = ev.value;
+        }
+    }
+
+    /** Redraws for the latest event. */
+    public static class ConflateReceiver {
+        final int redraw;
+        volatile int latest;
+        ConflateReceiver(int redraw) { this.redraw = redraw; }
+
+        @WeakSubscribe
+        @WeakConflate
+        public void progress(Progress ev) {
+            Blackhole.consumeCPU(redraw);
+            latest = ev.value;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+        asyncBus = new AsyncEventBus(executor);
+        queued = new QueuedReceiver(redraw);
+        WeakEventBus.register(queued, asyncBus);
+        conflateBus = new EventBus();
+        conflated = new ConflateReceiver(redraw);
+        WeakEventBus.register(conflated, conflateBus);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public void queued() {
+        queued.latest = -1;
+        for (int i = 0; i < burst; i++)
+            asyncBus.post(new Progress(i));
+        while (queued.latest != burst - 1)
+            Thread.yield();
+    }
+
+    @Benchmark
+    public void conflated() {
+        conflated.latest = -1;
+        for (int i = 0; i < burst; i++)
+            conflateBus.post(new Progress(i));
+        while (conflated.latest != burst - 1)
+            Thread.yield();
+    }
+}
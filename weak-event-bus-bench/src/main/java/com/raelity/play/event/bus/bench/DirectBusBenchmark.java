@@ -0,0 +1,119 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.DirectWeakEventBus;
+import com.raelity.lib.eventbus.WeakEventBus;
+
+import com.raelity.play.event.bus.bench.Receivers.ConcurrentEvent;
+import com.raelity.play.event.bus.bench.Receivers.SerialEvent;
+import com.raelity.play.event.bus.bench.Receivers.WeakReceiver;
+
+/**
+ * {@link DirectWeakEventBus} compared with a Guava {@link EventBus}
+ * and weak receiver proxies: post throughput, and the latency
+ * of registering and unregistering a receiver.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectBusBenchmark {
+    @Param({"1", "10"})
+    int receivers;
+
+    EventBus guavaBus;
+    DirectWeakEventBus directBus;
+    EventBus guavaChurnBus;
+    DirectWeakEventBus directChurnBus;
+    // Keep the strong references for the weak receivers.
+    List<Object> keep = new ArrayList<>();
+    Blackhole bh;
+    SerialEvent serialEv = new SerialEvent(42);
+    ConcurrentEvent concurrentEv = new ConcurrentEvent(42);
+
+    @Setup
+    public void setup(Blackhole bh) {
+        this.bh = bh;
+        guavaBus = new EventBus();
+        directBus = new DirectWeakEventBus();
+        for (int i = 0; i < receivers; i++) {
+            WeakReceiver br = new WeakReceiver(bh);
+            keep.add(br);
+            WeakEventBus.register(br, guavaBus);
+            directBus.register(br);
+        }
+        guavaChurnBus = new EventBus();
+        directChurnBus = new DirectWeakEventBus();
+    }
+
+    @Benchmark
+    public void guavaSerial() {
+        guavaBus.post(serialEv);
+    }
+
+    @Benchmark
+    public void directSerial() {
+        directBus.post(serialEv);
+    }
+
+    @Benchmark
+    public void guavaConcurrent() {
+        guavaBus.post(concurrentEv);
+    }
+
+    @Benchmark
+    public void directConcurrent() {
+        directBus.post(concurrentEv);
+    }
+
+    @Benchmark
+    public void guavaRegisterUnregister() {
+        WeakReceiver br = new WeakReceiver(bh);
+        WeakEventBus.register(br, guavaChurnBus);
+        WeakEventBus.unregister(br, guavaChurnBus);
+    }
+
+    @Benchmark
+    public void directRegisterUnregister() {
+        WeakReceiver br = new WeakReceiver(bh);
+        directChurnBus.register(br);
+        directChurnBus.unregister(br);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+
+import com.raelity.play.event.bus.bench.Receivers.SerialEvent;
+import com.raelity.play.event.bus.bench.Receivers.StrongReceiver;
+import com.raelity.play.event.bus.bench.Receivers.WeakReceiver;
+
+/**
+ * Single threaded post throughput; plain {@code @Subscribe} receivers
+ * compared with {@code @WeakSubscribe} receivers through their weak proxy.
+ * <p>
+ * The "trampoline" benchmarks call the subscriber method directly,
+ * without the EventBus, to isolate the proxy's cost; the weak proxy
+ * should allocate nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    @Param({"1", "10"})
+    int receivers;
+
+    EventBus strongBus;
+    EventBus weakBus;
+    // Keep the strong references for the weak receivers.
+    List<Object> keep = new ArrayList<>();
+    SerialEvent ev = new SerialEvent(42);
+
+    StrongReceiver strongBR;
+    WeakEB_Receivers_WeakReceiver weakBR;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        strongBus = new EventBus();
+        weakBus = new EventBus();
+        for (int i = 0; i < receivers; i++) {
+            strongBus.register(new StrongReceiver(bh));
+            WeakReceiver br = new WeakReceiver(bh);
+            keep.add(br);
+            WeakEventBus.register(br, weakBus);
+        }
+        strongBR = new StrongReceiver(bh);
+        WeakReceiver br = new WeakReceiver(bh);
+        keep.add(br);
+        weakBR = new WeakEB_Receivers_WeakReceiver(br);
+    }
+
+    @Benchmark
+    public void postStrong() {
+        strongBus.post(ev);
+    }
+
+    @Benchmark
+    public void postWeak() {
+        weakBus.post(ev);
+    }
+
+    @Benchmark
+    public void trampolineStrong() {
+        strongBR.serial(ev);
+    }
+
+    @Benchmark
+    public void trampolineWeak() {
+        weakBR.serial(ev);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+import com.raelity.lib.eventbus.WeakMailbox;
+import com.raelity.lib.eventbus.WeakSubscribe;
+
+import com.raelity.play.event.bus.bench.Receivers.SerialEvent;
+
+/**
+ * Post throughput on a synchronous EventBus with one slow receiver.
+ * Without a mailbox the posting thread runs the slow receiver;
+ * with a {@link WeakMailbox} it only queues the event, and events
+ * that do not fit are dropped and counted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MailboxBenchmark {
+    @Param({"2000"})
+    int work;
+
+    EventBus directBus;
+    EventBus mailboxBus;
+    SlowReceiver direct;
+    SlowMailboxReceiver mailbox;
+    SerialEvent ev = new SerialEvent(42);
+
+    /** Slow, in the posting thread. */
+    public static class SlowReceiver {
+        final int work;
+        SlowReceiver(int work) { this.work = work; }
+
+        @WeakSubscribe
+        public void serial(SerialEvent ev) {
+            Blackhole.consumeCPU(work);
+        }
+    }
+
+    /** Slow, behind a mailbox. */
+    @WeakMailbox(capacity = 1024, overflow = WeakMailbox.Overflow.DROP_NEWEST)
+    public static class SlowMailboxReceiver {
+        final int work;
+        SlowMailboxReceiver(int work) { this.work = work; }
+
+        @WeakSubscribe
+        public void serial(SerialEvent ev) {
+            Blackhole.consumeCPU(work);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        directBus = new EventBus();
+        direct = new SlowReceiver(work);
+        WeakEventBus.register(direct, directBus);
+        mailboxBus = new EventBus();
+        mailbox = new SlowMailboxReceiver(work);
+        WeakEventBus.register(mailbox, mailboxBus);
+    }
+
+    @Benchmark
+    public void direct() {
+        directBus.post(ev);
+    }
+
+    @Benchmark
+    public void mailbox() {
+        mailboxBus.post(ev);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+
+import com.raelity.play.event.bus.bench.Receivers.StrongReceiver;
+import com.raelity.play.event.bus.bench.Receivers.WeakReceiver;
+
+/**
+ * Heap retained per receiver registered with several event buses;
+ * the aux counter retainedBytes. Twice RECEIVERS are registered, it is
+ * the growth, after a full GC, of the heap used over the second half;
+ * it includes the receiver itself and the event buses' subscriber
+ * entries. Collected weak receivers are cleaned up lazily, so each
+ * fork does a single registration run. The time is that of registering
+ * all the receivers, with the GCs; Guava's subscriber sets are copy on
+ * write, registration is quadratic in the receivers.
+ * <ul>
+ * <li>strong - plain Guava receivers, for reference</li>
+ * <li>weak - {@link WeakEventBus} receivers</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(1)
+public class MemoryBenchmark {
+    static final int RECEIVERS = 5_000;
+    static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    @Param({"1", "3", "5"})
+    int buses;
+
+    EventBus[] eventBuses;
+    List<Object> receivers;
+    Blackhole bh;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Retained {
+        public long retainedBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole bh) {
+        this.bh = bh;
+        eventBuses = new EventBus[buses];
+        for (int i = 0; i < buses; i++)
+            eventBuses[i] = new EventBus("memory-" + i);
+        receivers = new ArrayList<>(2 * RECEIVERS);
+        used();
+    }
+
+    private static long used() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @Benchmark
+    public void strong(Retained retained) {
+        long half = 0;
+        for (int i = 0; i < 2 * RECEIVERS; i++) {
+            if (i == RECEIVERS)
+                half = used();
+            StrongReceiver br = new StrongReceiver(bh);
+            receivers.add(br);
+            for (EventBus eb : eventBuses)
+                eb.register(br);
+        }
+        retained.retainedBytes = (used() - half) / RECEIVERS;
+    }
+
+    @Benchmark
+    public void weak(Retained retained) {
+        long half = 0;
+        for (int i = 0; i < 2 * RECEIVERS; i++) {
+            if (i == RECEIVERS)
+                half = used();
+            WeakReceiver br = new WeakReceiver(bh);
+            receivers.add(br);
+            for (EventBus eb : eventBuses)
+                WeakEventBus.register(br, eb);
+        }
+        retained.retainedBytes = (used() - half) / RECEIVERS;
+    }
+}
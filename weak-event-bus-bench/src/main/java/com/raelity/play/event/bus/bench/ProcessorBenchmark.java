@@ -0,0 +1,211 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raelity.lib.eventbus.WeakEventBusProcessor;
+
+/**
+ * Compile a synthetic code base of receiver classes, each with
+ * a few {@code @WeakSubscribe} methods, in 100 classes per package.
+ * <ul>
+ * <li>withProcessor - WeakEventBusProcessor runs; the aux counter
+ *     processorMillis is the time spent in its process method</li>
+ * <li>withoutProcessor - -proc:none, the baseline</li>
+ * </ul>
+ * The difference includes compiling the generated weak receivers.
+ * <p>
+ * A 10k run takes a while, {@code -p classes=10000}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ProcessorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Sources {
+        @Param({"1000", "10000"})
+        int classes;
+
+        List<JavaFileObject> sources;
+        Path out;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            sources = new ArrayList<>(classes);
+            for (int i = 0; i < classes; i++)
+                sources.add(source("synth.p" + i / 100, "Receiver" + i));
+            out = Files.createTempDirectory("ProcessorBenchmark");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            try (Stream<Path> files = Files.walk(out)) {
+                files.sorted(Comparator.reverseOrder()).forEach(f -> {
+                    try {
+                        Files.delete(f);
+                    } catch(IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class ProcessorTime {
+        public long processorMillis;
+    }
+
+    private static JavaFileObject source(String pkg, String name) {
+        String code = "package " + pkg + ";\n"
+                + "import com.raelity.lib.eventbus.*;\n"
+                + "public class " + name + " {\n"
+                + "    @WeakSubscribe public void onString(String s) { }\n"
+                + "    @WeakSubscribe @WeakAllowConcurrentEvents\n"
+                + "    public void onInteger(Integer i) { }\n"
+                + "    @WeakSubscribe public void onObject(Object o) { }\n"
+                + "}\n";
+        URI uri = URI.create("string:///" + pkg.replace('.', '/') + "/" + name
+                + JavaFileObject.Kind.SOURCE.extension);
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    private static void compile(Sources s, Processor processor) {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        List<String> options = new ArrayList<>(List.of(
+                "-d", s.out.toString(), "-s", s.out.toString(),
+                "-classpath", System.getProperty("java.class.path")));
+        if (processor == null)
+            options.add("-proc:none");
+        JavaCompiler.CompilationTask task
+                = javac.getTask(null, null, null, options, null, s.sources);
+        if (processor != null)
+            task.setProcessors(List.of(processor));
+        if (!task.call())
+            throw new IllegalStateException("compile failed");
+    }
+
+    @Benchmark
+    public void withProcessor(Sources s, ProcessorTime time) {
+        Timed timed = new Timed(new WeakEventBusProcessor());
+        compile(s, timed);
+        time.processorMillis += TimeUnit.NANOSECONDS.toMillis(timed.nanos);
+    }
+
+    @Benchmark
+    public void withoutProcessor(Sources s) {
+        compile(s, null);
+    }
+
+    /** Accumulates the time spent in the processor's process method. */
+    private static class Timed implements Processor {
+        private final Processor processor;
+        long nanos;
+
+        Timed(Processor processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        public Set<String> getSupportedOptions() {
+            return processor.getSupportedOptions();
+        }
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return processor.getSupportedAnnotationTypes();
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return processor.getSupportedSourceVersion();
+        }
+
+        @Override
+        public void init(ProcessingEnvironment processingEnv) {
+            processor.init(processingEnv);
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations,
+                               RoundEnvironment roundEnv) {
+            long start = System.nanoTime();
+            try {
+                return processor.process(annotations, roundEnv);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public Iterable<? extends Completion> getCompletions(
+                Element element, AnnotationMirror annotation,
+                ExecutableElement member, String userText) {
+            return processor.getCompletions(element, annotation, member, userText);
+        }
+    }
+}
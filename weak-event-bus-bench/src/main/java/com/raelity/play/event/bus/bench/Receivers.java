@@ -0,0 +1,103 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.List;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakAllowConcurrentEvents;
+import com.raelity.lib.eventbus.WeakSubscribe;
+
+/**
+ * The event bus receivers used by the benchmarks.
+ * Each pair of strong and weak receivers does the same work.
+ */
+public class Receivers {
+    private Receivers() { }
+
+    /** Event type handled serially. */
+    public static final class SerialEvent {
+        final long value;
+        public SerialEvent(long value) { this.value = value; }
+    }
+
+    /** Event type handled concurrently. */
+    public static final class ConcurrentEvent {
+        final long value;
+        public ConcurrentEvent(long value) { this.value = value; }
+    }
+
+    /** Plain Guava receiver. */
+    public static class StrongReceiver {
+        final Blackhole bh;
+        public StrongReceiver(Blackhole bh) { this.bh = bh; }
+
+        @Subscribe
+        public void serial(SerialEvent ev) {
+            bh.consume(ev.value);
+        }
+
+        @Subscribe
+        @AllowConcurrentEvents
+        public void concurrent(ConcurrentEvent ev) {
+            bh.consume(ev.value);
+        }
+    }
+
+    /** Receiver that is registered through a weak proxy. */
+    public static class WeakReceiver {
+        final Blackhole bh;
+        public WeakReceiver(Blackhole bh) { this.bh = bh; }
+
+        @WeakSubscribe
+        public void serial(SerialEvent ev) {
+            bh.consume(ev.value);
+        }
+
+        @WeakSubscribe
+        @WeakAllowConcurrentEvents
+        public void concurrent(ConcurrentEvent ev) {
+            bh.consume(ev.value);
+        }
+    }
+
+    /** Receiver that gets its events in batches. */
+    public static class BatchReceiver {
+        final Blackhole bh;
+        public BatchReceiver(Blackhole bh) { this.bh = bh; }
+
+        @WeakSubscribe(batchSize = 64, batchMillis = 10)
+        public void serial(List<SerialEvent> evs) {
+            for (SerialEvent ev : evs)
+                bh.consume(ev.value);
+        }
+    }
+
+    /**
+     * The annotation processor does not generate a weak receiver for
+     * this class, it has no annotations of its own; its weak receiver
+     * is generated at runtime.
+     */
+    public static class RuntimeReceiver extends WeakReceiver {
+        public RuntimeReceiver(Blackhole bh) { super(bh); }
+    }
+}
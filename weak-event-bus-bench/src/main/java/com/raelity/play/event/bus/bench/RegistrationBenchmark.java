@@ -0,0 +1,76 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+
+import com.raelity.play.event.bus.bench.Receivers.StrongReceiver;
+import com.raelity.play.event.bus.bench.Receivers.WeakReceiver;
+
+/**
+ * Latency of registering and then unregistering a receiver;
+ * {@link WeakEventBus} compared with a plain Guava receiver.
+ * A new receiver is used for each operation,
+ * as happens when GUI components come and go.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistrationBenchmark {
+    EventBus eventBus;
+    Blackhole bh;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        this.bh = bh;
+        eventBus = new EventBus();
+    }
+
+    @Benchmark
+    public void registerUnregisterStrong() {
+        StrongReceiver br = new StrongReceiver(bh);
+        eventBus.register(br);
+        eventBus.unregister(br);
+    }
+
+    @Benchmark
+    public void registerUnregisterWeak() {
+        WeakReceiver br = new WeakReceiver(bh);
+        WeakEventBus.register(br, eventBus);
+        WeakEventBus.unregister(br, eventBus);
+    }
+}
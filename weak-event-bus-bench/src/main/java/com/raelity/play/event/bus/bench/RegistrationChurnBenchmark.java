@@ -0,0 +1,98 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+
+import com.raelity.play.event.bus.bench.Receivers.WeakReceiver;
+
+/**
+ * Registration churn from many threads; each thread registers
+ * a new receiver with several event buses and then unregisters it.
+ * <p>
+ * With "threadBuses" each thread has its own event buses, so the
+ * contention measured is in WeakEventBus's registry. With "sharedBuses"
+ * Guava's registry of the shared buses is also contended.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(32)
+@Fork(1)
+public class RegistrationChurnBenchmark {
+    static final int BUSES = 3;
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        EventBus[] buses = newBuses();
+    }
+
+    @State(Scope.Thread)
+    public static class PerThread {
+        EventBus[] buses = newBuses();
+        Blackhole bh;
+
+        @Setup
+        public void setup(Blackhole bh) {
+            this.bh = bh;
+        }
+    }
+
+    static EventBus[] newBuses() {
+        EventBus[] buses = new EventBus[BUSES];
+        for (int i = 0; i < BUSES; i++)
+            buses[i] = new EventBus();
+        return buses;
+    }
+
+    static void churn(EventBus[] buses, Blackhole bh) {
+        WeakReceiver br = new WeakReceiver(bh);
+        for (EventBus eventBus : buses)
+            WeakEventBus.register(br, eventBus);
+        for (EventBus eventBus : buses)
+            WeakEventBus.unregister(br, eventBus);
+    }
+
+    @Benchmark
+    public void threadBuses(PerThread t) {
+        churn(t.buses, t.bh);
+    }
+
+    @Benchmark
+    public void sharedBuses(Shared s, PerThread t) {
+        churn(s.buses, t.bh);
+    }
+}
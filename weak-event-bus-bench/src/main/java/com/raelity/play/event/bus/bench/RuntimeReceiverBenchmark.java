@@ -0,0 +1,91 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+
+import com.raelity.play.event.bus.bench.Receivers.ConcurrentEvent;
+import com.raelity.play.event.bus.bench.Receivers.RuntimeReceiver;
+import com.raelity.play.event.bus.bench.Receivers.SerialEvent;
+import com.raelity.play.event.bus.bench.Receivers.WeakReceiver;
+
+/**
+ * Post throughput through a weak receiver generated at runtime compared
+ * with one generated by the annotation processor. After warm-up they
+ * should be within a few percent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuntimeReceiverBenchmark {
+    EventBus processorBus;
+    EventBus runtimeBus;
+    WeakReceiver processorBR;
+    RuntimeReceiver runtimeBR;
+    SerialEvent serialEv = new SerialEvent(42);
+    ConcurrentEvent concurrentEv = new ConcurrentEvent(42);
+
+    @Setup
+    public void setup(Blackhole bh) {
+        processorBus = new EventBus();
+        processorBR = new WeakReceiver(bh);
+        WeakEventBus.register(processorBR, processorBus);
+        runtimeBus = new EventBus();
+        runtimeBR = new RuntimeReceiver(bh);
+        WeakEventBus.register(runtimeBR, runtimeBus);
+    }
+
+    @Benchmark
+    public void processorSerial() {
+        processorBus.post(serialEv);
+    }
+
+    @Benchmark
+    public void runtimeSerial() {
+        runtimeBus.post(serialEv);
+    }
+
+    @Benchmark
+    public void processorConcurrent() {
+        processorBus.post(concurrentEv);
+    }
+
+    @Benchmark
+    public void runtimeConcurrent() {
+        runtimeBus.post(concurrentEv);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+import com.raelity.lib.eventbus.WeakEventBusScope;
+
+import com.raelity.play.event.bus.bench.Receivers.WeakReceiver;
+
+/**
+ * Tearing down a screen's worth of receivers registered on several
+ * buses: one {@link WeakEventBus#unregister} per receiver and bus,
+ * compared with closing a {@link WeakEventBusScope}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+public class ScopeBenchmark {
+
+    /** The receivers and buses; registered by the subclasses. */
+    @State(Scope.Thread)
+    public abstract static class Screen {
+        @Param({"50", "500"})
+        int receivers;
+
+        @Param({"4"})
+        int buses;
+
+        List<EventBus> eventBuses;
+        List<WeakReceiver> keep;
+
+        @Setup(Level.Invocation)
+        public void setup(Blackhole bh) {
+            eventBuses = new ArrayList<>(buses);
+            for (int i = 0; i < buses; i++)
+                eventBuses.add(new EventBus());
+            keep = new ArrayList<>(receivers);
+            for (int i = 0; i < receivers; i++) {
+                WeakReceiver br = new WeakReceiver(bh);
+                keep.add(br);
+                for (EventBus eb : eventBuses)
+                    register(br, eb);
+            }
+        }
+
+        abstract void register(WeakReceiver br, EventBus eb);
+    }
+
+    public static class EachScreen extends Screen {
+        @Override
+        void register(WeakReceiver br, EventBus eb) {
+            WeakEventBus.register(br, eb);
+        }
+    }
+
+    public static class ScopeScreen extends Screen {
+        WeakEventBusScope scope;
+
+        @Override
+        void register(WeakReceiver br, EventBus eb) {
+            // A new scope for each invocation, the last one is closed.
+            if (scope == null || scope.size() == 0)
+                scope = WeakEventBus.scope();
+            scope.register(br, eb);
+        }
+    }
+
+    @Benchmark
+    public void unregisterEach(EachScreen screen) {
+        for (WeakReceiver br : screen.keep) {
+            for (EventBus eb : screen.eventBuses)
+                WeakEventBus.unregister(br, eb);
+        }
+    }
+
+    @Benchmark
+    public void closeScope(ScopeScreen screen) {
+        screen.scope.close();
+    }
+}
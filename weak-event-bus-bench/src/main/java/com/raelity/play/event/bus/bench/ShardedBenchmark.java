@@ -0,0 +1,265 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.raelity.lib.eventbus.ShardedEventBus;
+import com.raelity.lib.eventbus.WeakAllowConcurrentEvents;
+import com.raelity.lib.eventbus.WeakEventBus;
+import com.raelity.lib.eventbus.WeakSubscribe;
+
+/**
+ * Posting threads, each posting its own event type, to one EventBus
+ * compared with a {@link ShardedEventBus} of 16 shards. There are 16
+ * event types, each with one weak receiver.
+ * For scaling, run with 1 to 16 threads:
+ * <pre>
+ * for t in 1 2 4 8 16; do
+ *     java -jar target/benchmarks.jar ShardedBenchmark -t $t
+ * done
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ShardedBenchmark {
+    static final int TYPES = 16;
+
+    @Param({"single", "sharded"})
+    String bus;
+
+    EventBus eventBus;
+    List<Object> keep = new ArrayList<>();
+
+    @Setup
+    public void setup(Blackhole bh) {
+        eventBus = bus.equals("single") ? new EventBus("bench")
+                   : new ShardedEventBus("bench", TYPES);
+        Object[] receivers = {
+            new R0(bh),
+            new R1(bh),
+            new R2(bh),
+            new R3(bh),
+            new R4(bh),
+            new R5(bh),
+            new R6(bh),
+            new R7(bh),
+            new R8(bh),
+            new R9(bh),
+            new R10(bh),
+            new R11(bh),
+            new R12(bh),
+            new R13(bh),
+            new R14(bh),
+            new R15(bh)
+        };
+        for (Object br : receivers) {
+            keep.add(br);
+            WeakEventBus.register(br, eventBus);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Poster {
+        Object event;
+
+        @Setup
+        public void setup(ThreadParams threads) {
+            event = events(threads.getThreadIndex() % TYPES);
+        }
+    }
+
+    @Benchmark
+    public void post(Poster poster) {
+        eventBus.post(poster.event);
+    }
+
+    private static Object events(int type) {
+        switch (type) {
+        case 0: return new E0();
+        case 1: return new E1();
+        case 2: return new E2();
+        case 3: return new E3();
+        case 4: return new E4();
+        case 5: return new E5();
+        case 6: return new E6();
+        case 7: return new E7();
+        case 8: return new E8();
+        case 9: return new E9();
+        case 10: return new E10();
+        case 11: return new E11();
+        case 12: return new E12();
+        case 13: return new E13();
+        case 14: return new E14();
+        case 15: return new E15();
+        default: throw new IllegalArgumentException();
+        }
+    }
+
+    public static final class E0 { }
+    public static class R0 {
+        final Blackhole bh;
+        R0(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E0 ev) { bh.consume(ev); }
+    }
+
+    public static final class E1 { }
+    public static class R1 {
+        final Blackhole bh;
+        R1(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E1 ev) { bh.consume(ev); }
+    }
+
+    public static final class E2 { }
+    public static class R2 {
+        final Blackhole bh;
+        R2(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E2 ev) { bh.consume(ev); }
+    }
+
+    public static final class E3 { }
+    public static class R3 {
+        final Blackhole bh;
+        R3(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E3 ev) { bh.consume(ev); }
+    }
+
+    public static final class E4 { }
+    public static class R4 {
+        final Blackhole bh;
+        R4(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E4 ev) { bh.consume(ev); }
+    }
+
+    public static final class E5 { }
+    public static class R5 {
+        final Blackhole bh;
+        R5(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E5 ev) { bh.consume(ev); }
+    }
+
+    public static final class E6 { }
+    public static class R6 {
+        final Blackhole bh;
+        R6(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E6 ev) { bh.consume(ev); }
+    }
+
+    public static final class E7 { }
+    public static class R7 {
+        final Blackhole bh;
+        R7(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E7 ev) { bh.consume(ev); }
+    }
+
+    public static final class E8 { }
+    public static class R8 {
+        final Blackhole bh;
+        R8(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E8 ev) { bh.consume(ev); }
+    }
+
+    public static final class E9 { }
+    public static class R9 {
+        final Blackhole bh;
+        R9(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E9 ev) { bh.consume(ev); }
+    }
+
+    public static final class E10 { }
+    public static class R10 {
+        final Blackhole bh;
+        R10(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E10 ev) { bh.consume(ev); }
+    }
+
+    public static final class E11 { }
+    public static class R11 {
+        final Blackhole bh;
+        R11(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E11 ev) { bh.consume(ev); }
+    }
+
+    public static final class E12 { }
+    public static class R12 {
+        final Blackhole bh;
+        R12(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E12 ev) { bh.consume(ev); }
+    }
+
+    public static final class E13 { }
+    public static class R13 {
+        final Blackhole bh;
+        R13(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E13 ev) { bh.consume(ev); }
+    }
+
+    public static final class E14 { }
+    public static class R14 {
+        final Blackhole bh;
+        R14(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E14 ev) { bh.consume(ev); }
+    }
+
+    public static final class E15 { }
+    public static class R15 {
+        final Blackhole bh;
+        R15(Blackhole bh) { this.bh = bh; }
+        @WeakSubscribe @WeakAllowConcurrentEvents
+        public void on(E15 ev) { bh.consume(ev); }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.raelity.lib.eventbus.DirectWeakEventBus;
+import com.raelity.lib.eventbus.WeakEventBus;
+
+import com.raelity.play.event.bus.bench.Receivers.RuntimeReceiver;
+import com.raelity.play.event.bus.bench.Receivers.SerialEvent;
+import com.raelity.play.event.bus.bench.Receivers.StrongReceiver;
+import com.raelity.play.event.bus.bench.Receivers.WeakReceiver;
+
+/**
+ * Cold start: the first registration and post in a fresh JVM.
+ * Each measurement is a new fork, so the class loading, the
+ * reflection and any annotation scanning are included.
+ * <ul>
+ * <li>guavaStrong - Guava scans the receiver</li>
+ * <li>guavaWeak - Guava scans the generated weak receiver</li>
+ * <li>directIndex - the generated subscriber index, no scanning</li>
+ * <li>directRuntime - the subscriber index is built with reflection</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+    @Benchmark
+    public EventBus guavaStrong(Blackhole bh) {
+        EventBus eventBus = new EventBus();
+        eventBus.register(new StrongReceiver(bh));
+        eventBus.post(new SerialEvent(42));
+        return eventBus;
+    }
+
+    @Benchmark
+    public Object guavaWeak(Blackhole bh) {
+        EventBus eventBus = new EventBus();
+        WeakReceiver br = new WeakReceiver(bh);
+        WeakEventBus.register(br, eventBus);
+        eventBus.post(new SerialEvent(42));
+        return br;
+    }
+
+    @Benchmark
+    public Object directIndex(Blackhole bh) {
+        DirectWeakEventBus eventBus = new DirectWeakEventBus();
+        WeakReceiver br = new WeakReceiver(bh);
+        eventBus.register(br);
+        eventBus.post(new SerialEvent(42));
+        return br;
+    }
+
+    @Benchmark
+    public Object directRuntime(Blackhole bh) {
+        DirectWeakEventBus eventBus = new DirectWeakEventBus();
+        WeakReceiver br = new RuntimeReceiver(bh);
+        eventBus.register(br);
+        eventBus.post(new SerialEvent(42));
+        return br;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.lang.ref.Reference;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The base class of the generated weak event bus receivers.
+ * Holds the weak reference to the strong event bus receiver;
+ * or a soft reference, see {@link ReferenceStrength}.
+ * <p>
+ * When a delivery finds that the strong receiver has been collected,
+ * the weak receiver queues its own removal from the event bus;
+ * it does not wait for the garbage collector to queue it.
+ * The removal is queued at most once, and is done off the posting thread.
+ * <p>
+ * The generated subscriber methods are all {@code @AllowConcurrentEvents};
+ * those without {@link WeakAllowConcurrentEvents} are serialized here,
+ * each with its own lock, rather than by the event bus's
+ * {@code synchronized}. A virtual thread waiting for the lock
+ * does not pin its carrier thread.
+ * @param <T> the strong event bus receiver's type
+ */
+public abstract class AbstractWeakReceiver<T>
+{
+private static final AtomicIntegerFieldUpdater<AbstractWeakReceiver> EXPIRED
+        = AtomicIntegerFieldUpdater.newUpdater(AbstractWeakReceiver.class, "expired");
+
+// Only changed before registration.
+private Reference<T> ref;
+private ReferenceStrength strength;
+// Strong during a grace period; a holder, so a stale timer
+// can not clear a later pin.
+@SuppressWarnings("unused")
+private Object[] pin;
+private final ReentrantLock[] locks;
+private volatile int expired;
+/** Set by WeakEventBus when registered. */
+volatile Registration registration;
+
+protected AbstractWeakReceiver(T strongBR)
+{
+    this(strongBR, 0);
+}
+
+/**
+ * @param strongBR the strong event bus receiver
+ * @param serialMethods the number of subscriber methods
+ *        that do not allow concurrent events
+ */
+protected AbstractWeakReceiver(T strongBR, int serialMethods)
+{
+    this(strongBR, serialMethods, ReferenceStrength.WEAK);
+}
+
+/**
+ * @param strongBR the strong event bus receiver
+ * @param serialMethods the number of subscriber methods
+ *        that do not allow concurrent events
+ * @param strength how strongly strongBR is referenced
+ */
+protected AbstractWeakReceiver(T strongBR, int serialMethods,
+                               ReferenceStrength strength)
+{
+    this.ref = strength.reference(strongBR);
+    this.strength = strength;
+    grace(strongBR, strength);
+    this.locks = new ReentrantLock[serialMethods];
+    for (int i = 0; i < serialMethods; i++)
+        locks[i] = new ReentrantLock();
+}
+
+/**
+ * Change the reference strength; before registration.
+ */
+void strength(ReferenceStrength strength)
+{
+    T br = ref.get();
+    ref = strength.reference(br);
+    this.strength = strength;
+    pin = null;
+    grace(br, strength);
+}
+
+/** @return the reference strength */
+ReferenceStrength referenceStrength()
+{
+    return strength;
+}
+
+private void grace(T strongBR, ReferenceStrength strength)
+{
+    if (strength.kind() != ReferenceStrength.Kind.WEAK_AFTER_GRACE)
+        return;
+    Object[] holder = { strongBR };
+    pin = holder;
+    Scheduler.schedule(() -> holder[0] = null,
+                       strength.grace(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+}
+
+/**
+ * Acquire a serial subscriber method's lock.
+ * @param method the serial method's number
+ */
+protected final void lock(int method)
+{
+    locks[method].lock();
+}
+
+/**
+ * Release a serial subscriber method's lock.
+ * @param method the serial method's number
+ */
+protected final void unlock(int method)
+{
+    locks[method].unlock();
+}
+
+/**
+ * Get the strong event bus receiver. If it has been collected,
+ * this weak receiver's removal from the event bus is queued.
+ * @return the strong receiver, or null if it has been collected
+ */
+protected final T strongBR()
+{
+    T br = ref.get();
+    if (br == null)
+        expired();
+    return br;
+}
+
+private void expired()
+{
+    if (WeakEventBusMetrics.enabled)
+        WeakEventBusMetrics.INSTANCE.deadDelivery();
+    if (expired == 0 && EXPIRED.compareAndSet(this, 0, 1)) {
+        Registration r = registration;
+        if (r != null) {
+            r.queued();
+            r.enqueue();
+        }
+    }
+}
+}
@@ -0,0 +1,139 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Buffers the events for a batched {@link WeakSubscribe} method and
+ * delivers them as lists; used by the generated weak receivers.
+ * <p>
+ * A batch is delivered when it reaches the batch size, in the posting
+ * thread, or when its oldest event has waited the batch time, with the
+ * {@link WeakEventBus#virtualThreadExecutor()}. Batches are delivered
+ * one at a time and in order. An exception thrown by the subscriber is
+ * logged; it does not reach the event bus's exception handler.
+ * @param <E> event type
+ */
+public final class BatchDelivery<E> extends DrainLoop
+{
+private final int size;
+private final long millis;
+private final Consumer<List<E>> target;
+private final ReentrantLock lock = new ReentrantLock();
+// guarded by lock
+private ArrayList<E> buffer;
+// guarded by lock
+private boolean scheduled;
+private final ConcurrentLinkedQueue<List<E>> ready = new ConcurrentLinkedQueue<>();
+
+/**
+ * @param size the most events in a batch
+ * @param millis the longest an event waits for its batch to be delivered
+ * @param target delivers a batch to the strong receiver
+ */
+public BatchDelivery(int size, long millis, Consumer<List<E>> target)
+{
+    if (size <= 0 || millis <= 0)
+        throw new IllegalArgumentException("batch size and time must be positive");
+    this.size = size;
+    this.millis = millis;
+    this.target = target;
+}
+
+/**
+ * Add an event to the current batch.
+ * @param event the event
+ */
+public void add(E event)
+{
+    List<E> full = null;
+    boolean schedule = false;
+    lock.lock();
+    try {
+        if (buffer == null)
+            buffer = new ArrayList<>(Math.min(size, 16));
+        buffer.add(event);
+        if (buffer.size() >= size) {
+            full = buffer;
+            buffer = null;
+        } else if (!scheduled) {
+            scheduled = true;
+            schedule = true;
+        }
+    } finally {
+        lock.unlock();
+    }
+    if (schedule)
+        Scheduler.schedule(this::timeout, millis, TimeUnit.MILLISECONDS);
+    if (full != null) {
+        ready.add(full);
+        drain();
+    }
+}
+
+/** Deliver the partial batch, if any, now. */
+public void flush()
+{
+    if (take())
+        drain();
+}
+
+private void timeout()
+{
+    if (take())
+        drainLater(VirtualThreads.EXECUTOR);
+}
+
+/** Move the current batch to the ready queue. */
+private boolean take()
+{
+    List<E> partial;
+    lock.lock();
+    try {
+        scheduled = false;
+        partial = buffer;
+        buffer = null;
+    } finally {
+        lock.unlock();
+    }
+    if (partial == null)
+        return false;
+    ready.add(partial);
+    return true;
+}
+
+@Override
+void drainPending()
+{
+    List<E> batch;
+    while((batch = ready.poll()) != null) {
+        try {
+            target.accept(Collections.unmodifiableList(batch));
+        } catch(RuntimeException ex) {
+            failed(ex, target, batch);
+        }
+    }
+}
+}
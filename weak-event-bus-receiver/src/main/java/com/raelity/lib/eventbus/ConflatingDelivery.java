@@ -0,0 +1,71 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Holds the newest undelivered event for a {@link WeakConflate}
+ * method and delivers it with the
+ * {@link WeakEventBus#virtualThreadExecutor()};
+ * used by the generated weak receivers.
+ * <p>
+ * Posting replaces any undelivered event; the executor is only
+ * used when there was none. An exception thrown by the subscriber
+ * is logged; it does not reach the event bus's exception handler.
+ * @param <E> event type
+ */
+public final class ConflatingDelivery<E> extends DrainLoop
+{
+private final Consumer<E> target;
+private final AtomicReference<E> pending = new AtomicReference<>();
+
+/**
+ * @param target delivers an event to the strong receiver
+ */
+public ConflatingDelivery(Consumer<E> target)
+{
+    this.target = target;
+}
+
+/**
+ * Make the event the one to deliver next.
+ * @param event the event
+ */
+public void post(E event)
+{
+    if (pending.getAndSet(event) == null)
+        drainLater(VirtualThreads.EXECUTOR);
+    else if (WeakEventBusMetrics.enabled)
+        WeakEventBusMetrics.INSTANCE.conflated();
+}
+
+@Override
+void drainPending()
+{
+    E event = pending.getAndSet(null);
+    if (event == null)
+        return;
+    try {
+        target.accept(event);
+    } catch(RuntimeException ex) {
+        failed(ex, target, event);
+    }
+}
+}
@@ -0,0 +1,422 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+
+/**
+ * An event bus whose receivers are strong event bus receivers with
+ * {@link WeakSubscribe} methods; the receivers are only weakly referenced.
+ * <p>
+ * Unlike {@link WeakEventBus} with a Guava {@link EventBus}, there is no
+ * weak receiver proxy. This bus keeps a {@link WeakReference} to each
+ * receiver in its own subscriber registry, and dispatches through the
+ * invoker table generated by {@link WeakEventBusProcessor};
+ * there is no {@code Method.invoke}.
+ * <p>
+ * The semantics are those of Guava's {@link EventBus}. An event is
+ * delivered to the subscribers of its class and of all its supertypes.
+ * An event without subscribers is wrapped in a {@link DeadEvent} and posted.
+ * A subscriber method is invoked serially unless it is annotated
+ * {@link WeakAllowConcurrentEvents}. Events posted by a subscriber
+ * are queued and delivered, in order, after the current event.
+ * With an executor, like {@code AsyncEventBus}, each delivery
+ * runs on the executor. Exceptions thrown by subscribers
+ * are logged, like EventBus's default handler.
+ * <p>
+ * When a receiver is collected, it is removed on a later register,
+ * unregister, or post; a post that finds a collected receiver
+ * does not wait for the removal.
+ */
+public class DirectWeakEventBus
+{
+private static final Subscriber[] EMPTY = new Subscriber[0];
+
+private final String identifier;
+private final Executor executor;
+
+private final ReentrantLock lock = new ReentrantLock();
+// guarded by lock; weak keys, identity equality
+private final Map<Object, Receiver> receivers
+        = new MapMaker().concurrencyLevel(1).weakKeys().makeMap();
+private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+// Event type to its subscribers; the arrays are never modified.
+private final ConcurrentMap<Class<?>, Subscriber[]> byType = new ConcurrentHashMap<>();
+// Posted event class to subscribers of it and its supertypes.
+private final ConcurrentMap<Class<?>, Subscriber[]> dispatchCache = new ConcurrentHashMap<>();
+private volatile int modCount;
+private volatile boolean expungeNeeded;
+
+private final ThreadLocal<Dispatch> dispatch = ThreadLocal.withInitial(Dispatch::new);
+
+/** Creates a new DirectWeakEventBus named "default". */
+public DirectWeakEventBus()
+{
+    this("default");
+}
+
+/**
+ * Creates a new DirectWeakEventBus with the given identifier.
+ * @param identifier a brief name for this bus, for logging purposes
+ */
+public DirectWeakEventBus(String identifier)
+{
+    this(identifier, null);
+}
+
+/**
+ * Creates a new DirectWeakEventBus that delivers events on the executor.
+ * @param identifier a brief name for this bus, for logging purposes
+ * @param executor executor for deliveries, null delivers in the posting thread
+ */
+public DirectWeakEventBus(String identifier, Executor executor)
+{
+    this.identifier = identifier;
+    this.executor = executor;
+}
+
+/** @return the identifier for this event bus */
+public final String identifier()
+{
+    return identifier;
+}
+
+/**
+ * Register the {@link WeakSubscribe} methods of the strong receiver.
+ * Only a weak reference to the receiver is kept.
+ * Registering it again does nothing.
+ * @param strongBR the event bus receiver
+ * @throws IllegalStateException if there are no subscriber methods for the class
+ */
+public void register(Object strongBR)
+{
+    WeakSubscriberIndex index = WeakEventBus.index(strongBR.getClass());
+    lock.lock();
+    try {
+        expunge();
+        if (receivers.containsKey(strongBR))
+            return;
+        Receiver receiver = new Receiver(strongBR, queue);
+        Subscriber[] subscribers = new Subscriber[index.subscribers().size()];
+        int i = 0;
+        // One merge per event type.
+        for (Map.Entry<Class<?>, List<WeakSubscriberMethod>> entry
+                : index.byEventType().entrySet()) {
+            List<WeakSubscriberMethod> methods = entry.getValue();
+            Subscriber[] typeSubscribers = new Subscriber[methods.size()];
+            for (int j = 0; j < typeSubscribers.length; j++) {
+                typeSubscribers[j] = new Subscriber(receiver, methods.get(j));
+                subscribers[i++] = typeSubscribers[j];
+            }
+            byType.merge(entry.getKey(), typeSubscribers, DirectWeakEventBus::concat);
+        }
+        receiver.subscribers = subscribers;
+        receivers.put(strongBR, receiver);
+        changed();
+    } finally {
+        lock.unlock();
+    }
+}
+
+/**
+ * Unregister all the subscriber methods of the strong receiver.
+ * @param strongBR the event bus receiver
+ * @throws IllegalArgumentException if the receiver was not registered
+ */
+public void unregister(Object strongBR)
+{
+    lock.lock();
+    try {
+        Receiver receiver = receivers.remove(strongBR);
+        if (receiver == null)
+            throw new IllegalArgumentException(
+                    "missing event subscriber for an annotated method. Is "
+                    + strongBR + " registered?");
+        receiver.clear();
+        remove(receiver);
+        expunge();
+        changed();
+    } finally {
+        lock.unlock();
+    }
+}
+
+/**
+ * Post each of the events, in order.
+ * @param events events to post
+ */
+public void postAll(Iterable<?> events)
+{
+    for (Object event : events)
+        post(event);
+}
+
+/**
+ * Posts an event to all registered subscribers.
+ * If there are none, and the event is not already a {@link DeadEvent},
+ * it is wrapped in a DeadEvent and reposted.
+ * @param event event to post
+ */
+public void post(Object event)
+{
+    Subscriber[] subscribers = subscribers(event.getClass());
+    if (subscribers.length == 0) {
+        if (!(event instanceof DeadEvent))
+            post(new DeadEvent(this, event));
+        return;
+    }
+    Dispatch d = dispatch.get();
+    if (d.dispatching) {
+        d.queue.add(event);
+        d.queue.add(subscribers);
+        return;
+    }
+    d.dispatching = true;
+    try {
+        deliver(event, subscribers);
+        Object ev;
+        while((ev = d.queue.poll()) != null)
+            deliver(ev, (Subscriber[])d.queue.poll());
+    } finally {
+        d.dispatching = false;
+        d.queue.clear();
+    }
+    // Remove collected receivers, but never wait for the lock.
+    if (expungeNeeded && lock.tryLock()) {
+        try {
+            expunge();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
+
+private void deliver(Object event, Subscriber[] subscribers)
+{
+    if (executor == null) {
+        for (Subscriber subscriber : subscribers)
+            subscriber.dispatch(event);
+    } else {
+        for (Subscriber subscriber : subscribers)
+            executor.execute(() -> subscriber.dispatch(event));
+    }
+}
+
+/**
+ * The subscribers for an event class, including those of its supertypes.
+ * Cached until the next registration change.
+ */
+private Subscriber[] subscribers(Class<?> eventClass)
+{
+    Subscriber[] subscribers = dispatchCache.get(eventClass);
+    if (subscribers != null)
+        return subscribers;
+    int mc = modCount;
+    List<Subscriber> all = new ArrayList<>();
+    for (Class<?> type : flattened.get(eventClass)) {
+        Subscriber[] s = byType.get(type);
+        if (s != null)
+            Collections.addAll(all, s);
+    }
+    subscribers = all.toArray(EMPTY);
+    dispatchCache.put(eventClass, subscribers);
+    // A registration change since starting; the result may be stale.
+    if (mc != modCount)
+        dispatchCache.remove(eventClass, subscribers);
+    return subscribers;
+}
+
+/** Invalidate the dispatch cache; called holding lock. */
+private void changed()
+{
+    modCount++;
+    dispatchCache.clear();
+}
+
+/** Remove the receivers that have been collected; called holding lock. */
+private void expunge()
+{
+    expungeNeeded = false;
+    boolean any = false;
+    Reference<?> ref;
+    while((ref = queue.poll()) != null) {
+        remove((Receiver)ref);
+        any = true;
+    }
+    if (any)
+        changed();
+}
+
+/** Remove the receiver's subscribers; called holding lock. */
+private void remove(Receiver receiver)
+{
+    if (receiver.removed)
+        return;
+    receiver.removed = true;
+    for (Subscriber subscriber : receiver.subscribers) {
+        byType.computeIfPresent(subscriber.method.eventType(),
+                                (k, v) -> without(v, subscriber));
+    }
+}
+
+private static Subscriber[] concat(Subscriber[] a, Subscriber[] b)
+{
+    Subscriber[] result = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, result, a.length, b.length);
+    return result;
+}
+
+private static Subscriber[] without(Subscriber[] a, Subscriber subscriber)
+{
+    int i = Arrays.asList(a).indexOf(subscriber);
+    if (i < 0)
+        return a;
+    if (a.length == 1)
+        return null;
+    Subscriber[] result = new Subscriber[a.length - 1];
+    System.arraycopy(a, 0, result, 0, i);
+    System.arraycopy(a, i + 1, result, i, a.length - i - 1);
+    return result;
+}
+
+private void handleException(RuntimeException ex, Object strongBR,
+                             Object event, WeakSubscriberMethod method)
+{
+    Logger logger = Logger.getLogger(
+            DirectWeakEventBus.class.getName() + "." + identifier);
+    if (logger.isLoggable(Level.SEVERE))
+        logger.log(Level.SEVERE, String.format(
+                "Exception thrown by subscriber method %s on subscriber %s"
+                        + " when dispatching event: %s",
+                method, strongBR, event), ex);
+}
+
+@Override
+public String toString()
+{
+    return getClass().getSimpleName() + "{" + identifier + "}";
+}
+
+/** Every type an event of a class is delivered as. */
+private static final ClassValue<Class<?>[]> flattened = new ClassValue<Class<?>[]>() {
+    @Override
+    protected Class<?>[] computeValue(Class<?> type)
+    {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        flatten(type, types);
+        return types.toArray(new Class<?>[0]);
+    }
+};
+
+private static void flatten(Class<?> type, Set<Class<?>> types)
+{
+    if (type == null || !types.add(type))
+        return;
+    flatten(type.getSuperclass(), types);
+    for (Class<?> i : type.getInterfaces())
+        flatten(i, types);
+}
+
+/**
+ * A registered receiver; weakly references the strong receiver.
+ * Queued when the strong receiver is collected, or found collected.
+ */
+private static final class Receiver extends WeakReference<Object>
+{
+// set once while registering, before published
+Subscriber[] subscribers;
+// guarded by lock
+boolean removed;
+
+Receiver(Object strongBR, ReferenceQueue<Object> queue)
+{
+    super(strongBR, queue);
+}
+}
+
+/**
+ * One subscriber method of a receiver. A method that does not allow
+ * concurrent events is serialized with a lock, not synchronized,
+ * so a virtual thread waiting for it does not pin its carrier.
+ */
+private final class Subscriber
+{
+private final Receiver receiver;
+private final WeakSubscriberMethod method;
+// null if concurrent
+private final ReentrantLock serial;
+
+Subscriber(Receiver receiver, WeakSubscriberMethod method)
+{
+    this.receiver = receiver;
+    this.method = method;
+    this.serial = method.isConcurrent() ? null : new ReentrantLock();
+}
+
+void dispatch(Object event)
+{
+    Object strongBR = receiver.get();
+    if (strongBR == null) {
+        receiver.enqueue();
+        expungeNeeded = true;
+        return;
+    }
+    try {
+        if (serial == null) {
+            method.invoke(strongBR, event);
+        } else {
+            serial.lock();
+            try {
+                method.invoke(strongBR, event);
+            } finally {
+                serial.unlock();
+            }
+        }
+    } catch(RuntimeException ex) {
+        handleException(ex, strongBR, event, method);
+    }
+}
+}
+
+/** Per thread dispatch state; event and subscribers pairs are queued. */
+private static final class Dispatch
+{
+boolean dispatching;
+final ArrayDeque<Object> queue = new ArrayDeque<>();
+}
+}
@@ -0,0 +1,89 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers events that a generated weak receiver has held back,
+ * one thread at a time. Whoever signals while another thread is
+ * draining leaves the work to it; that thread loops until nothing
+ * was signalled during its last pass. Nothing blocks.
+ */
+abstract class DrainLoop
+{
+private final AtomicInteger wip = new AtomicInteger();
+private final Runnable drainer = this::drainLoop;
+
+/**
+ * Deliver everything pending. Called by one thread at a time;
+ * must not throw an exception, see {@link #failed}. An Error must
+ * be thrown after taking the event it was thrown for.
+ */
+abstract void drainPending();
+
+/** Drain in this thread, unless some thread is already draining. */
+final void drain()
+{
+    if (wip.getAndIncrement() == 0)
+        drainLoop();
+}
+
+/** Drain with the executor, unless some thread is already draining. */
+final void drainLater(Executor executor)
+{
+    if (wip.getAndIncrement() == 0)
+        executor.execute(drainer);
+}
+
+private void drainLoop()
+{
+    int missed = 1;
+    Error error = null;
+    do {
+        try {
+            drainPending();
+        } catch(Error ex) {
+            // A subscriber threw an Error. Drain what's left, including
+            // anything signalled meanwhile, then throw it; leaving wip
+            // set would stop all later deliveries.
+            if (error == null)
+                error = ex;
+            else if (ex != error)
+                error.addSuppressed(ex);
+            continue;
+        }
+        missed = wip.addAndGet(-missed);
+    } while(missed != 0);
+    if (error != null)
+        throw error;
+}
+
+/** Log an exception thrown by a subscriber method. */
+static void failed(RuntimeException ex, Object target, Object event)
+{
+    Logger logger = Logger.getLogger(WeakEventBus.class.getName());
+    if (logger.isLoggable(Level.SEVERE))
+        logger.log(Level.SEVERE, String.format(
+                "Exception thrown by subscriber %s when dispatching event: %s",
+                target, event), ex);
+}
+}
@@ -0,0 +1,219 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.raelity.lib.eventbus.WeakMailbox.Overflow;
+
+/**
+ * The bounded mailbox of a {@link WeakMailbox} weak receiver;
+ * used by the generated weak receivers.
+ * <p>
+ * The queue is lock free; a slot is reserved with a compare and set
+ * of the size before the event is queued. Only a posting thread that
+ * must {@link Overflow#BLOCK} takes a lock. The mailbox is drained
+ * with the {@link WeakEventBus#virtualThreadExecutor()}.
+ * An exception thrown by the subscriber is logged;
+ * it does not reach the event bus's exception handler.
+ */
+public final class Mailbox extends DrainLoop
+{
+/** Delivers an event to a subscriber method of the strong receiver. */
+@FunctionalInterface
+public interface Target
+{
+void deliver(int method, Object event);
+}
+
+private static final ConcurrentMap<String, LongAdder> dropsByReceiver
+        = new ConcurrentHashMap<>();
+
+private final int capacity;
+private final Overflow overflow;
+private final String receiver;
+private final LongAdder drops;
+private final Target target;
+private final ConcurrentLinkedQueue<Mail> queue = new ConcurrentLinkedQueue<>();
+private final AtomicInteger size = new AtomicInteger();
+// For BLOCK
+private final ReentrantLock lock = new ReentrantLock();
+private final Condition notFull = lock.newCondition();
+private final AtomicInteger waiters = new AtomicInteger();
+private volatile Thread drainer;
+// For COUNT_AND_DROP, reported since the mailbox was last empty
+private volatile boolean reported;
+
+/**
+ * @param capacity the most events the mailbox holds
+ * @param overflow what to do when full
+ * @param receiver the strong receiver class, drops are counted for it
+ * @param target delivers the events
+ */
+public Mailbox(int capacity, Overflow overflow, Class<?> receiver, Target target)
+{
+    if (capacity <= 0)
+        throw new IllegalArgumentException("capacity must be positive");
+    this.capacity = capacity;
+    this.overflow = overflow;
+    this.receiver = receiver.getName();
+    this.drops = dropsByReceiver.computeIfAbsent(this.receiver, k -> new LongAdder());
+    this.target = target;
+}
+
+/**
+ * Queue an event for a subscriber method.
+ * @param method the method number
+ * @param event the event
+ */
+public void post(int method, Object event)
+{
+    while(true) {
+        int n = size.get();
+        if (n < capacity) {
+            if (size.compareAndSet(n, n + 1))
+                break;
+            continue;
+        }
+        switch(overflow) {
+        case DROP_NEWEST:
+            drops.increment();
+            return;
+        case COUNT_AND_DROP:
+            drops.increment();
+            report();
+            return;
+        case DROP_OLDEST:
+            if (queue.poll() != null) {
+                size.decrementAndGet();
+                drops.increment();
+            }
+            continue;
+        case BLOCK:
+            if (Thread.currentThread() == drainer) {
+                // Posted by the subscriber itself; waiting would deadlock.
+                size.incrementAndGet();
+                break;
+            }
+            awaitNotFull();
+            continue;
+        }
+        break;
+    }
+    queue.add(new Mail(method, event));
+    drainLater(VirtualThreads.EXECUTOR);
+}
+
+private void awaitNotFull()
+{
+    lock.lock();
+    try {
+        waiters.incrementAndGet();
+        try {
+            while(size.get() >= capacity)
+                notFull.awaitUninterruptibly();
+        } finally {
+            waiters.decrementAndGet();
+        }
+    } finally {
+        lock.unlock();
+    }
+}
+
+private void report()
+{
+    if (reported)
+        return;
+    reported = true;
+    Logger logger = Logger.getLogger(WeakEventBus.class.getName());
+    if (logger.isLoggable(Level.WARNING))
+        logger.log(Level.WARNING, String.format(
+                "Mailbox for %s is full, %d events; dropping events",
+                receiver, capacity));
+}
+
+@Override
+void drainPending()
+{
+    drainer = Thread.currentThread();
+    try {
+        Mail mail;
+        while((mail = queue.poll()) != null) {
+            size.decrementAndGet();
+            if (waiters.get() > 0) {
+                lock.lock();
+                try {
+                    notFull.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            try {
+                target.deliver(mail.method, mail.event);
+            } catch(RuntimeException ex) {
+                failed(ex, receiver, mail.event);
+            }
+        }
+        reported = false;
+    } finally {
+        drainer = null;
+    }
+}
+
+/** @return total events dropped, all mailboxes */
+static long drops()
+{
+    return dropsByReceiver.values().stream().mapToLong(LongAdder::sum).sum();
+}
+
+/** @return events dropped keyed by strong receiver class */
+static Map<String, Long> dropsByReceiver()
+{
+    Map<String, Long> map = new TreeMap<>();
+    dropsByReceiver.forEach((k, v) -> map.put(k, v.sum()));
+    return map;
+}
+
+static void resetDrops()
+{
+    dropsByReceiver.values().forEach(LongAdder::reset);
+}
+
+/** A queued event. */
+private static final class Mail
+{
+final int method;
+final Object event;
+
+Mail(int method, Object event)
+{
+    this.method = method;
+    this.event = event;
+}
+}
+}
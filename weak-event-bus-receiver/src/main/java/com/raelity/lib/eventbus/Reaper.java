@@ -0,0 +1,200 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.eventbus.EventBus;
+
+/**
+ * Unregister the weak receivers of collected strong receivers.
+ * <p>
+ * The {@link Registration}s of collected strong receivers arrive on
+ * a {@link ReferenceQueue}. The reaper thread waits for the first one,
+ * takes any more that arrive within the drain delay,
+ * and then unregisters the batch
+ * grouped by event bus. When a large screen closes, hundreds of receivers
+ * die together; they are handled together rather than as hundreds of
+ * independent actions competing with posting threads.
+ * <p>
+ * The thread is created, with the configured ThreadFactory,
+ * when the first weak receiver is registered.
+ */
+final class Reaper
+{
+private Reaper() { }
+
+private static final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+private static final Object lock = new Object();
+// guarded by lock
+private static final List<Registration> pending = new ArrayList<>();
+
+private static volatile ThreadFactory threadFactory = r -> {
+    Thread t = new Thread(r, "WeakEventBus-reaper");
+    t.setDaemon(true);
+    return t;
+};
+private static volatile long delayNanos = TimeUnit.MILLISECONDS.toNanos(10);
+private static volatile Thread thread;
+
+/**
+ * The queue for registrations; the reaper thread is started if needed.
+ * @return the reference queue the reaper drains
+ */
+static ReferenceQueue<Object> queue()
+{
+    if (thread == null)
+        start();
+    return queue;
+}
+
+private static synchronized void start()
+{
+    if (thread != null)
+        return;
+    Thread t = threadFactory.newThread(Reaper::run);
+    t.start();
+    thread = t;
+}
+
+static synchronized void setThreadFactory(ThreadFactory factory)
+{
+    if (thread != null)
+        throw new IllegalStateException("reaper thread already started");
+    threadFactory = factory;
+}
+
+static void setDelay(long delay, TimeUnit unit)
+{
+    if (delay < 0)
+        throw new IllegalArgumentException("negative delay");
+    delayNanos = unit.toNanos(delay);
+}
+
+private static void run()
+{
+    while(true) {
+        try {
+            // Wait out the delay taking references as they arrive,
+            // so each is timestamped close to when the GC queued it.
+            Registration ref = (Registration)queue.remove();
+            long deadline = System.nanoTime() + delayNanos;
+            while(ref != null) {
+                ref.queued();
+                synchronized(lock) {
+                    pending.add(ref);
+                }
+                long wait = deadline - System.nanoTime();
+                if (wait <= 0)
+                    break;
+                ref = (Registration)queue.remove(
+                        Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+            }
+            reap();
+        } catch(InterruptedException ex) {
+            // Nothing to do; keep reaping.
+        } catch(Throwable ex) {
+            // Unregister should not throw. Don't let the thread die,
+            // without it collected receivers are never unregistered.
+            Logger logger = Logger.getLogger(WeakEventBus.class.getName());
+            if (logger.isLoggable(Level.SEVERE))
+                logger.log(Level.SEVERE, "Reaper failed to unregister", ex);
+        }
+    }
+}
+
+/**
+ * Drain the queue and unregister everything in it, grouped by event bus.
+ * On return everything that was queued has been unregistered,
+ * or has failed to; a failure is thrown after trying the rest.
+ */
+static void reap()
+{
+    synchronized(lock) {
+        Reference<?> ref;
+        while((ref = queue.poll()) != null) {
+            ((Registration)ref).queued();
+            pending.add((Registration)ref);
+        }
+        if (pending.isEmpty())
+            return;
+        try {
+            unregister(pending);
+        } finally {
+            pending.clear();
+        }
+    }
+}
+
+/**
+ * Unregister the registrations from all of their event buses,
+ * grouped by event bus.
+ * @param registrations to unregister
+ */
+static void unregister(Collection<Registration> registrations)
+{
+    Map<EventBus, List<Registration>> byBus = new LinkedHashMap<>();
+    for (Registration registration : registrations) {
+        for (EventBus eb : registration.eventBuses())
+            byBus.computeIfAbsent(eb, k -> new ArrayList<>()).add(registration);
+    }
+    try {
+        unregister(byBus);
+    } finally {
+        for (Registration registration : registrations)
+            registration.cleaned();
+    }
+}
+
+/**
+ * Unregister registrations from event buses. If any throws, the rest are
+ * still unregistered and then the first is thrown.
+ * @param byBus the registrations to unregister from each event bus
+ */
+private static void unregister(Map<EventBus, List<Registration>> byBus)
+{
+    Throwable failed = null;
+    for (Map.Entry<EventBus, List<Registration>> entry : byBus.entrySet()) {
+        EventBus eb = entry.getKey();
+        for (Registration registration : entry.getValue()) {
+            try {
+                registration.unregister(eb);
+            } catch(RuntimeException | Error ex) {
+                if (failed == null)
+                    failed = ex;
+                else if (ex != failed)
+                    failed.addSuppressed(ex);
+            }
+        }
+    }
+    if (failed instanceof Error)
+        throw (Error)failed;
+    if (failed != null)
+        throw (RuntimeException)failed;
+}
+}
@@ -0,0 +1,129 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How strongly a weak receiver references its strong receiver.
+ * The default for a class is given by {@link WeakStrength};
+ * {@link WeakEventBus#register(Object, com.google.common.eventbus.EventBus,
+ * ReferenceStrength)} can override it for one registration.
+ * <ul>
+ * <li>{@link #WEAK} - the receiver is unregistered once it is otherwise
+ *     unreachable; the default</li>
+ * <li>{@link #SOFT} - kept while memory allows; for receivers that are
+ *     expensive to rebuild, like cache-like views</li>
+ * <li>{@link #weakAfter} - strongly referenced for a grace period
+ *     after registration, then weak</li>
+ * </ul>
+ */
+public final class ReferenceStrength
+{
+/** The kinds of strength. */
+public enum Kind { WEAK, SOFT, WEAK_AFTER_GRACE }
+
+/** A WeakReference. */
+public static final ReferenceStrength WEAK = new ReferenceStrength(Kind.WEAK, 0);
+/** A SoftReference. */
+public static final ReferenceStrength SOFT = new ReferenceStrength(Kind.SOFT, 0);
+
+private final Kind kind;
+private final long graceNanos;
+
+private ReferenceStrength(Kind kind, long graceNanos)
+{
+    this.kind = kind;
+    this.graceNanos = graceNanos;
+}
+
+/**
+ * A WeakReference, and a strong reference for the grace period
+ * after registration.
+ * @param grace the grace period
+ * @param unit grace's unit
+ * @return the strength
+ * @throws IllegalArgumentException if grace is not positive
+ */
+public static ReferenceStrength weakAfter(long grace, TimeUnit unit)
+{
+    if (grace <= 0)
+        throw new IllegalArgumentException("grace period must be positive");
+    return new ReferenceStrength(Kind.WEAK_AFTER_GRACE, unit.toNanos(grace));
+}
+
+/** @return the kind of strength */
+public Kind kind()
+{
+    return kind;
+}
+
+/**
+ * @param unit the unit of the result
+ * @return the grace period, zero unless WEAK_AFTER_GRACE
+ */
+public long grace(TimeUnit unit)
+{
+    return unit.convert(graceNanos, TimeUnit.NANOSECONDS);
+}
+
+/** @return the strength given by the annotation */
+static ReferenceStrength of(WeakStrength annotation)
+{
+    switch(annotation.value()) {
+    case SOFT:
+        return SOFT;
+    case WEAK_AFTER_GRACE:
+        return weakAfter(annotation.graceMillis(), TimeUnit.MILLISECONDS);
+    default:
+        return WEAK;
+    }
+}
+
+<T> Reference<T> reference(T referent)
+{
+    return kind == Kind.SOFT ? new SoftReference<>(referent)
+                             : new WeakReference<>(referent);
+}
+
+@Override
+public boolean equals(Object obj)
+{
+    if (!(obj instanceof ReferenceStrength))
+        return false;
+    ReferenceStrength other = (ReferenceStrength)obj;
+    return kind == other.kind && graceNanos == other.graceNanos;
+}
+
+@Override
+public int hashCode()
+{
+    return kind.hashCode() * 31 + Long.hashCode(graceNanos);
+}
+
+@Override
+public String toString()
+{
+    return kind == Kind.WEAK_AFTER_GRACE
+           ? kind + "(" + TimeUnit.NANOSECONDS.toMillis(graceNanos) + "ms)"
+           : kind.toString();
+}
+}
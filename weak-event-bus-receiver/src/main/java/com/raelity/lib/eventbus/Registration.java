@@ -0,0 +1,201 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.eventbus.EventBus;
+
+/**
+ * A strong receiver's weak receiver and the event buses it is
+ * registered with; there is one per strong receiver, the weak receiver
+ * is shared by all of its event buses.
+ * <p>
+ * This is a weak reference to the strong receiver, queued to the
+ * {@link Reaper} when the strong receiver is collected;
+ * the weak receiver also queues it when a delivery finds the
+ * strong receiver gone. The reaper removes the weak receiver from all
+ * of its event buses at once. The event buses are only weakly referenced.
+ * The registration is reachable from the weak receiver, which the
+ * event buses hold, for as long as it matters.
+ */
+final class Registration extends WeakReference<Object>
+{
+private static final Bus[] NO_BUSES = new Bus[0];
+
+/** An event bus and the scope it was registered in, may be null. */
+private static final class Bus extends WeakReference<EventBus>
+{
+private final WeakEventBusScope scope;
+
+private Bus(EventBus eb, WeakEventBusScope scope)
+{
+    super(eb);
+    this.scope = scope;
+}
+}
+
+/** Copy on write, changed while synchronized; usually one or two
+ * entries, a map costs several hundred bytes. Collected event buses
+ * are dropped on the next change. */
+private volatile Bus[] buses = NO_BUSES;
+private final AbstractWeakReceiver<?> weakBR;
+/** When queued for the reaper; only if metrics are enabled. */
+private long queuedNanos;
+
+Registration(Object strongBR, AbstractWeakReceiver<?> weakBR)
+{
+    super(strongBR, Reaper.queue());
+    this.weakBR = weakBR;
+}
+
+AbstractWeakReceiver<?> weakBR()
+{
+    return weakBR;
+}
+
+/** @return the event buses the weak receiver is registered with */
+List<EventBus> eventBuses()
+{
+    Bus[] current = buses;
+    List<EventBus> l = new ArrayList<>(current.length);
+    for (Bus bus : current) {
+        EventBus eb = bus.get();
+        if (eb != null)
+            l.add(eb);
+    }
+    return l;
+}
+
+/** @return true if registered and the strong receiver is alive */
+boolean isLive()
+{
+    return buses.length != 0 && get() != null;
+}
+
+/** @return index of the event bus, or -1 */
+private static int indexOf(Bus[] current, EventBus eb)
+{
+    for (int i = 0; i < current.length; i++) {
+        if (current[i].get() == eb)
+            return i;
+    }
+    return -1;
+}
+
+/**
+ * Note the time this registration is queued for the reaper;
+ * used for the cleanup latency metric.
+ */
+void queued()
+{
+    if (WeakEventBusMetrics.enabled && queuedNanos == 0)
+        queuedNanos = System.nanoTime();
+}
+
+/**
+ * Record the cleanup latency, if queued and metrics are enabled.
+ */
+void cleaned()
+{
+    long queued = queuedNanos;
+    if (queued != 0 && WeakEventBusMetrics.enabled)
+        WeakEventBusMetrics.INSTANCE.cleanup(System.nanoTime() - queued);
+}
+
+/**
+ * Register the weak receiver with the event bus, and record it.
+ * The scope's lock, if any, is held.
+ * @param scope the scope of this bus's registration, may be null
+ * @return false if already registered with the event bus
+ */
+boolean register(EventBus eb, WeakEventBusScope scope)
+{
+    // The bus registration and its record change together;
+    // otherwise an unregister between them leaves an unknown,
+    // never removed, weak receiver on the bus.
+    synchronized(this) {
+        Bus[] current = buses;
+        if (indexOf(current, eb) >= 0)
+            return false;
+        eb.register(weakBR);
+        Bus[] next = new Bus[current.length + 1];
+        int n = 0;
+        for (Bus bus : current) {
+            if (bus.get() != null)
+                next[n++] = bus;
+        }
+        next[n++] = new Bus(eb, scope);
+        buses = n == next.length ? next : Arrays.copyOf(next, n);
+        if (scope != null)
+            scope.added(this, eb);
+    }
+    return true;
+}
+
+/**
+ * Unregister the weak receiver from the event bus; only the first
+ * call for a bus does anything.
+ * @param eb one of this registration's event buses, may be null
+ */
+void unregister(EventBus eb)
+{
+    unregister(eb, null, true);
+}
+
+/**
+ * Unregister the weak receiver from the event bus, if it was
+ * registered through the scope; not if, since then, it was
+ * unregistered and registered again some other way.
+ * @param eb one of this registration's event buses, may be null
+ * @param scope the scope
+ */
+void unregister(EventBus eb, WeakEventBusScope scope)
+{
+    unregister(eb, scope, false);
+}
+
+private void unregister(EventBus eb, WeakEventBusScope owner, boolean any)
+{
+    if (eb == null)
+        return;
+    WeakEventBusScope scope;
+    synchronized(this) {
+        Bus[] current = buses;
+        int i = indexOf(current, eb);
+        if (i < 0 || !any && current[i].scope != owner)
+            return;
+        scope = current[i].scope;
+        Bus[] next = new Bus[current.length - 1];
+        System.arraycopy(current, 0, next, 0, i);
+        System.arraycopy(current, i + 1, next, i, next.length - i);
+        buses = next;
+        try {
+            eb.unregister(weakBR);
+        } catch(IllegalArgumentException ex) {
+            // Not registered with the bus; nothing to do.
+        }
+    }
+    // Outside the lock; register takes the scope's lock before this one.
+    if (scope != null)
+        scope.removed(this, eb);
+}
+}
@@ -0,0 +1,497 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Define a weak event bus receiver at runtime, for a strong receiver
+ * class that {@link WeakEventBusProcessor} did not process; for example
+ * an IDE build, or a language without annotation processing.
+ * <p>
+ * The strong receiver's {@link WeakSubscribe} methods are found
+ * with reflection, once per class. The class file defined is equivalent
+ * to what the processor generates; the trampoline methods call the
+ * strong receiver directly, so dispatch is as fast as for a processor
+ * generated weak receiver. The class is defined in the strong receiver's
+ * package with {@link MethodHandles.Lookup#defineClass}.
+ */
+final class RuntimeReceiverGenerator
+{
+private RuntimeReceiverGenerator() { }
+
+private static final String SUPER
+        = "com/raelity/lib/eventbus/AbstractWeakReceiver";
+private static final String SUBSCRIBE
+        = "Lcom/google/common/eventbus/Subscribe;";
+private static final String ALLOW_CONCURRENT
+        = "Lcom/google/common/eventbus/AllowConcurrentEvents;";
+
+/**
+ * Create the factory for a runtime generated weak receiver.
+ * @param clazz the strong receiver class
+ * @return factory for the weak receiver
+ * @throws IllegalStateException if clazz has no usable
+ *         {@link WeakSubscribe} methods or the class can not be defined.
+ */
+static WeakReceiverFactory factory(Class<?> clazz)
+{
+    List<Method> methods = findMethods(clazz);
+    if (methods.isEmpty())
+        throw new IllegalStateException(String.format(
+                "%s has no @WeakSubscribe methods", clazz.getName()));
+    String name = clazz.getPackageName() + "."
+            + WeakEventBusProcessor.nameWeakBR(clazz.getName(), clazz.getPackageName())
+            + "$$Runtime";
+    try {
+        MethodHandles.Lookup lookup
+                = MethodHandles.privateLookupIn(clazz, MethodHandles.lookup());
+        Class<?> weakClazz;
+        try {
+            weakClazz = lookup.defineClass(generate(name, clazz, methods));
+        } catch(LinkageError ex) {
+            // Lost a race; another thread defined it. A subclass,
+            // ClassFormatError or VerifyError, is a bad class file.
+            if (ex.getClass() != LinkageError.class)
+                throw new IllegalStateException(String.format(
+                        "Runtime generated %s is invalid", name), ex);
+            try {
+                weakClazz = Class.forName(name, true, clazz.getClassLoader());
+            } catch(ClassNotFoundException ex2) {
+                ex2.addSuppressed(ex);
+                throw ex2;
+            }
+        }
+        MethodHandle ctor = lookup.findConstructor(weakClazz,
+                MethodType.methodType(void.class, Object.class))
+                .asType(MethodType.methodType(AbstractWeakReceiver.class, Object.class));
+        WeakStrength annotation = clazz.getAnnotation(WeakStrength.class);
+        ReferenceStrength strength = annotation == null ? null
+                                     : ReferenceStrength.of(annotation);
+        return strongBR -> {
+            AbstractWeakReceiver<?> weakBR;
+            try {
+                weakBR = (AbstractWeakReceiver<?>)ctor.invokeExact(strongBR);
+            } catch(RuntimeException | Error ex) {
+                throw ex;
+            } catch(Throwable ex) {
+                throw new UndeclaredThrowableException(ex);
+            }
+            if (strength != null)
+                weakBR.strength(strength);
+            return weakBR;
+        };
+    } catch(IllegalAccessException | NoSuchMethodException
+            | ClassNotFoundException | IOException ex) {
+        throw new IllegalStateException(String.format(
+                "Runtime creation of %s's weak EventBus receiver failed",
+                clazz.getName()), ex);
+    }
+}
+
+/**
+ * Create the subscriber index for a strong receiver class
+ * which the processor did not process. Not as fast as a generated
+ * index since the method handles are not constants.
+ * @param clazz the strong receiver class
+ * @return the subscriber index
+ * @throws IllegalStateException if clazz has no usable
+ *         {@link WeakSubscribe} methods or they can not be accessed.
+ */
+static WeakSubscriberIndex index(Class<?> clazz)
+{
+    List<Method> methods = findMethods(clazz);
+    if (methods.isEmpty())
+        throw new IllegalStateException(String.format(
+                "%s has no @WeakSubscribe methods", clazz.getName()));
+    int n = methods.size();
+    String[] names = new String[n];
+    Class<?>[] eventTypes = new Class<?>[n];
+    boolean[] concurrent = new boolean[n];
+    MethodHandle[] handles = new MethodHandle[n];
+    try {
+        MethodHandles.Lookup lookup
+                = MethodHandles.privateLookupIn(clazz, MethodHandles.lookup());
+        for (int i = 0; i < n; i++) {
+            Method m = methods.get(i);
+            names[i] = m.getName();
+            eventTypes[i] = m.getParameterTypes()[0];
+            concurrent[i] = m.isAnnotationPresent(WeakAllowConcurrentEvents.class);
+            handles[i] = lookup.unreflect(m).asType(
+                    MethodType.methodType(void.class, Object.class, Object.class));
+        }
+    } catch(IllegalAccessException ex) {
+        throw new IllegalStateException(String.format(
+                "Runtime creation of %s's subscriber index failed",
+                clazz.getName()), ex);
+    }
+    return new WeakSubscriberIndex(names, eventTypes, concurrent) {
+        @Override
+        protected void invoke(int method, Object strongBR, Object event)
+        {
+            try {
+                handles[method].invokeExact(strongBR, event);
+            } catch(RuntimeException | Error ex) {
+                throw ex;
+            } catch(Throwable ex) {
+                throw new UndeclaredThrowableException(ex);
+            }
+        }
+    };
+}
+
+/**
+ * Find the {@link WeakSubscribe} methods of the class and its
+ * superclasses which the weak receiver, in clazz's package, can call.
+ * @throws IllegalStateException if there is a batched or conflated method,
+ *         or clazz has a mailbox
+ */
+private static List<Method> findMethods(Class<?> clazz)
+{
+    if (clazz.isAnnotationPresent(WeakMailbox.class))
+        throw new IllegalStateException(String.format(
+                "%s @WeakMailbox requires the annotation processor", clazz.getName()));
+    List<Method> methods = new ArrayList<>();
+    Set<String> seen = new HashSet<>();
+    for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+        boolean samePackage = c.getClassLoader() == clazz.getClassLoader()
+                && c.getPackageName().equals(clazz.getPackageName());
+        for (Method m : c.getDeclaredMethods()) {
+            if (!m.isAnnotationPresent(WeakSubscribe.class) || m.isBridge())
+                continue;
+            if (m.getAnnotation(WeakSubscribe.class).batchSize() != 0
+                    || m.isAnnotationPresent(WeakConflate.class))
+                throw new IllegalStateException(String.format(
+                        "%s::%s batched or conflated @WeakSubscribe requires"
+                        + " the annotation processor", c.getName(), m.getName()));
+            int mod = m.getModifiers();
+            if (m.getParameterCount() != 1
+                    || m.getParameterTypes()[0].isPrimitive()
+                    || Modifier.isStatic(mod) || Modifier.isPrivate(mod)
+                    || !samePackage && !Modifier.isPublic(mod))
+                continue;
+            // Overridden methods are handled by the subclass.
+            if (seen.add(m.getName() + descriptor(m.getParameterTypes()[0])))
+                methods.add(m);
+        }
+    }
+    return methods;
+}
+
+private static String internalName(Class<?> c)
+{
+    return c.getName().replace('.', '/');
+}
+
+private static String descriptor(Class<?> c)
+{
+    return c.isArray() ? internalName(c) : "L" + internalName(c) + ";";
+}
+
+/**
+ * Generate the class file. For each method
+ * <pre>
+ *   &#64;Subscribe &#64;AllowConcurrentEvents
+ *   public void method(EventType ev) {
+ *       StrongReceiver br = (StrongReceiver)strongBR();
+ *       if (br != null)
+ *           br.method(ev);
+ *   }
+ * </pre>
+ * except that a method without {@link WeakAllowConcurrentEvents}
+ * calls the strong receiver between {@code lock(n)} and, in a finally,
+ * {@code unlock(n)}.
+ */
+private static byte[] generate(String name, Class<?> clazz, List<Method> methods)
+        throws IOException
+{
+    ConstantPool cp = new ConstantPool();
+    int thisClass = cp.clazz(name.replace('.', '/'));
+    int superClass = cp.clazz(SUPER);
+    int strongClass = cp.clazz(internalName(clazz));
+    int superInit = cp.methodref(superClass, "<init>", "(Ljava/lang/Object;I)V");
+    int lock = cp.methodref(thisClass, "lock", "(I)V");
+    int unlock = cp.methodref(thisClass, "unlock", "(I)V");
+    int throwable = cp.clazz("java/lang/Throwable");
+    int strongBR = cp.methodref(thisClass, "strongBR", "()Ljava/lang/Object;");
+    int code = cp.utf8("Code");
+    int stackMap = cp.utf8("StackMapTable");
+    int annotations = cp.utf8("RuntimeVisibleAnnotations");
+    int subscribe = cp.utf8(SUBSCRIBE);
+    int allowConcurrent = cp.utf8(ALLOW_CONCURRENT);
+
+    ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(methodBytes);
+
+    int serialMethods = 0;
+    for (Method m : methods) {
+        if (!m.isAnnotationPresent(WeakAllowConcurrentEvents.class))
+            serialMethods++;
+    }
+
+    // public <init>(Object strongBR) { super(strongBR, serialMethods); }
+    out.writeShort(Modifier.PUBLIC);
+    out.writeShort(cp.utf8("<init>"));
+    out.writeShort(cp.utf8("(Ljava/lang/Object;)V"));
+    out.writeShort(1);
+    out.writeShort(code);
+    out.writeInt(12 + 9);
+    out.writeShort(3);          // max_stack
+    out.writeShort(2);          // max_locals
+    out.writeInt(9);            // code_length
+    out.writeByte(0x2a);        // aload_0
+    out.writeByte(0x2b);        // aload_1
+    out.writeByte(0x11);        // sipush serialMethods
+    out.writeShort(serialMethods);
+    out.writeByte(0xb7);        // invokespecial
+    out.writeShort(superInit);
+    out.writeByte(0xb1);        // return
+    out.writeShort(0);          // exception_table_length
+    out.writeShort(0);          // attributes_count
+
+    int serial = 0;
+    for (Method m : methods) {
+        Class<?> eventType = m.getParameterTypes()[0];
+        String desc = "(" + descriptor(eventType) + ")V";
+        int target = cp.methodref(strongClass, m.getName(), desc);
+        boolean concurrent = m.isAnnotationPresent(WeakAllowConcurrentEvents.class);
+
+        out.writeShort(Modifier.PUBLIC);
+        out.writeShort(cp.utf8(m.getName()));
+        out.writeShort(cp.utf8(desc));
+        out.writeShort(2);
+        // Code
+        if (concurrent)
+            writeConcurrentCode(out, code, stackMap, strongBR, strongClass, target);
+        else
+            writeSerialCode(out, code, stackMap, strongBR, strongClass, target,
+                            lock, unlock, serial++, thisClass,
+                            cp.clazz(internalName(eventType)), throwable);
+        // RuntimeVisibleAnnotations
+        out.writeShort(annotations);
+        out.writeInt(2 + 4 * 2);
+        out.writeShort(2);
+        out.writeShort(subscribe);
+        out.writeShort(0);
+        out.writeShort(allowConcurrent);
+        out.writeShort(0);
+    }
+    out.flush();
+
+    ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+    out = new DataOutputStream(classBytes);
+    out.writeInt(0xCAFEBABE);
+    out.writeShort(0);              // minor_version
+    out.writeShort(55);             // major_version, java 11
+    cp.write(out);
+    out.writeShort(Modifier.PUBLIC | 0x20); // ACC_SUPER
+    out.writeShort(thisClass);
+    out.writeShort(superClass);
+    out.writeShort(0);              // interfaces_count
+    out.writeShort(0);              // fields_count
+    out.writeShort(1 + methods.size());
+    methodBytes.writeTo(out);
+    out.writeShort(0);              // attributes_count
+    out.flush();
+    return classBytes.toByteArray();
+}
+
+private static void writeConcurrentCode(DataOutputStream out, int code,
+        int stackMap, int strongBR, int strongClass, int target)
+        throws IOException
+{
+    out.writeShort(code);
+    out.writeInt(12 + 19 + 6 + 8);
+    out.writeShort(2);          // max_stack
+    out.writeShort(3);          // max_locals
+    out.writeInt(19);           // code_length
+    out.writeByte(0x2a);        //  0: aload_0
+    out.writeByte(0xb6);        //  1: invokevirtual strongBR
+    out.writeShort(strongBR);
+    out.writeByte(0xc0);        //  4: checkcast StrongReceiver
+    out.writeShort(strongClass);
+    out.writeByte(0x4d);        //  7: astore_2
+    out.writeByte(0x2c);        //  8: aload_2
+    out.writeByte(0xc6);        //  9: ifnull 18
+    out.writeShort(9);
+    out.writeByte(0x2c);        // 12: aload_2
+    out.writeByte(0x2b);        // 13: aload_1
+    out.writeByte(0xb6);        // 14: invokevirtual method
+    out.writeShort(target);
+    out.writeByte(0xb1);        // 17: return
+    out.writeByte(0xb1);        // 18: return
+    out.writeShort(0);          // exception_table_length
+    out.writeShort(1);          // attributes_count
+    // StackMapTable: at 18, append local "br"
+    out.writeShort(stackMap);
+    out.writeInt(2 + 6);
+    out.writeShort(1);          // number_of_entries
+    out.writeByte(252);         // append_frame, one local
+    out.writeShort(18);         // offset_delta
+    out.writeByte(7);           // Object_variable_info
+    out.writeShort(strongClass);
+}
+
+private static void writeSerialCode(DataOutputStream out, int code,
+        int stackMap, int strongBR, int strongClass, int target,
+        int lock, int unlock, int serial,
+        int thisClass, int eventClass, int throwable)
+        throws IOException
+{
+    out.writeShort(code);
+    out.writeInt(12 + 43 + 8 + 6 + 22);
+    out.writeShort(2);          // max_stack
+    out.writeShort(4);          // max_locals
+    out.writeInt(43);           // code_length
+    out.writeByte(0x2a);        //  0: aload_0
+    out.writeByte(0xb6);        //  1: invokevirtual strongBR
+    out.writeShort(strongBR);
+    out.writeByte(0xc0);        //  4: checkcast StrongReceiver
+    out.writeShort(strongClass);
+    out.writeByte(0x4d);        //  7: astore_2
+    out.writeByte(0x2c);        //  8: aload_2
+    out.writeByte(0xc6);        //  9: ifnull 42
+    out.writeShort(33);
+    out.writeByte(0x2a);        // 12: aload_0
+    out.writeByte(0x11);        // 13: sipush serial
+    out.writeShort(serial);
+    out.writeByte(0xb6);        // 16: invokevirtual lock
+    out.writeShort(lock);
+    out.writeByte(0x2c);        // 19: aload_2
+    out.writeByte(0x2b);        // 20: aload_1
+    out.writeByte(0xb6);        // 21: invokevirtual method
+    out.writeShort(target);
+    out.writeByte(0x2a);        // 24: aload_0
+    out.writeByte(0x11);        // 25: sipush serial
+    out.writeShort(serial);
+    out.writeByte(0xb6);        // 28: invokevirtual unlock
+    out.writeShort(unlock);
+    out.writeByte(0xb1);        // 31: return
+    out.writeByte(0x4e);        // 32: astore_3
+    out.writeByte(0x2a);        // 33: aload_0
+    out.writeByte(0x11);        // 34: sipush serial
+    out.writeShort(serial);
+    out.writeByte(0xb6);        // 37: invokevirtual unlock
+    out.writeShort(unlock);
+    out.writeByte(0x2d);        // 40: aload_3
+    out.writeByte(0xbf);        // 41: athrow
+    out.writeByte(0xb1);        // 42: return
+    out.writeShort(1);          // exception_table_length
+    out.writeShort(19);         // start_pc
+    out.writeShort(24);         // end_pc
+    out.writeShort(32);         // handler_pc
+    out.writeShort(0);          // catch_type, any
+    out.writeShort(1);          // attributes_count
+    // StackMapTable: at 32 the handler, at 42 the same locals
+    out.writeShort(stackMap);
+    out.writeInt(2 + 19 + 1);
+    out.writeShort(2);          // number_of_entries
+    out.writeByte(255);         // full_frame
+    out.writeShort(32);         // offset_delta
+    out.writeShort(3);          // number_of_locals
+    out.writeByte(7);
+    out.writeShort(thisClass);
+    out.writeByte(7);
+    out.writeShort(eventClass);
+    out.writeByte(7);
+    out.writeShort(strongClass);
+    out.writeShort(1);          // number_of_stack_items
+    out.writeByte(7);
+    out.writeShort(throwable);
+    out.writeByte(42 - 32 - 1); // same_frame, offset_delta
+}
+
+/** Just enough of a class file constant pool. */
+private static final class ConstantPool
+{
+private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+private final DataOutputStream out = new DataOutputStream(bytes);
+private final Map<String, Integer> entries = new HashMap<>();
+private int count = 1;
+
+int utf8(String s) throws IOException
+{
+    Integer index = entries.get("U" + s);
+    if (index != null)
+        return index;
+    out.writeByte(1);
+    out.writeUTF(s);
+    return add("U" + s);
+}
+
+int clazz(String internalName) throws IOException
+{
+    int nameIndex = utf8(internalName);
+    Integer index = entries.get("C" + internalName);
+    if (index != null)
+        return index;
+    out.writeByte(7);
+    out.writeShort(nameIndex);
+    return add("C" + internalName);
+}
+
+int methodref(int classIndex, String name, String desc) throws IOException
+{
+    int nameIndex = utf8(name);
+    int descIndex = utf8(desc);
+    String key = "N" + name + " " + desc;
+    Integer nameAndType = entries.get(key);
+    if (nameAndType == null) {
+        out.writeByte(12);
+        out.writeShort(nameIndex);
+        out.writeShort(descIndex);
+        nameAndType = add(key);
+    }
+    key = "M" + classIndex + " " + nameAndType;
+    Integer index = entries.get(key);
+    if (index != null)
+        return index;
+    out.writeByte(10);
+    out.writeShort(classIndex);
+    out.writeShort(nameAndType);
+    return add(key);
+}
+
+private int add(String key)
+{
+    entries.put(key, count);
+    return count++;
+}
+
+void write(DataOutputStream classOut) throws IOException
+{
+    out.flush();
+    classOut.writeShort(count);
+    bytes.writeTo(classOut);
+}
+}
+}
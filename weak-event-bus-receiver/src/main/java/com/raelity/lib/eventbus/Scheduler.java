@@ -0,0 +1,43 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One daemon thread for the library's timed work; batch timeouts and
+ * grace periods. The tasks are short; anything more is handed off.
+ */
+final class Scheduler
+{
+private Scheduler() { }
+
+private static final ScheduledExecutorService TIMER
+        = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "WeakEventBus-timer");
+            t.setDaemon(true);
+            return t;
+        });
+
+static void schedule(Runnable task, long delay, TimeUnit unit)
+{
+    TIMER.schedule(task, delay, unit);
+}
+}
@@ -0,0 +1,214 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntFunction;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.reflect.TypeToken;
+
+/**
+ * An EventBus that partitions its subscribers, by event type, over
+ * several internal event buses, the shards; threads posting different
+ * event types do not go through the same subscriber registry.
+ * Use it like any EventBus, in particular with
+ * {@link WeakEventBus#register(Object, EventBus)}.
+ * <p>
+ * Each registered object, usually a weak receiver, is on one shard,
+ * chosen by the event types it subscribes to. An event is posted to
+ * every shard that has a subscriber for its class or one of its
+ * supertypes, so it is delivered once to each subscriber. An event
+ * without subscribers is posted as a {@link DeadEvent}.
+ * <p>
+ * Events posted to different shards are dispatched by those shards;
+ * when an event goes to several shards, and a subscriber posts another
+ * event, the order of delivery may differ from a single EventBus.
+ * Register and unregister are serialized; post does not lock.
+ */
+public class ShardedEventBus extends EventBus
+{
+private final EventBus[] shards;
+/** The shard of each registered object; weak keys, identity equality. */
+private final Map<Object, Integer> shardOf = new MapMaker().weakKeys().makeMap();
+/** Per event type, the number of registered objects subscribing, by shard. */
+private final Map<Class<?>, AtomicIntegerArray> subscribers = new ConcurrentHashMap<>();
+/** Changed with the subscribers; older routes are recomputed. */
+private final AtomicInteger version = new AtomicInteger();
+private final Map<Class<?>, Route> routes = new ConcurrentHashMap<>();
+private final Object lock = new Object();
+
+/** The shards to post an event class to. */
+private static final class Route
+{
+private final int version;
+private final int[] shards;
+
+private Route(int version, int[] shards)
+{
+    this.version = version;
+    this.shards = shards;
+}
+}
+
+/** A class and all its supertypes, as Guava dispatches. */
+private static final ClassValue<Set<Class<?>>> hierarchy = new ClassValue<Set<Class<?>>>() {
+    @Override
+    protected Set<Class<?>> computeValue(Class<?> clazz)
+    {
+        return Set.copyOf(TypeToken.of(clazz).getTypes().rawTypes());
+    }
+};
+
+/** The event types of a class's {@link Subscribe} methods. */
+private static final ClassValue<Set<Class<?>>> eventTypes = new ClassValue<Set<Class<?>>>() {
+    @Override
+    protected Set<Class<?>> computeValue(Class<?> clazz)
+    {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (Class<?> c : hierarchy.get(clazz)) {
+            for (Method m : c.getDeclaredMethods()) {
+                if (m.isAnnotationPresent(Subscribe.class) && !m.isSynthetic()
+                        && m.getParameterCount() == 1)
+                    types.add(m.getParameterTypes()[0]);
+            }
+        }
+        return types;
+    }
+};
+
+/**
+ * @param identifier a brief name for the event bus, for logging purposes
+ * @param shards the number of shards, 1 to 64
+ */
+public ShardedEventBus(String identifier, int shards)
+{
+    this(identifier, shards, i -> new EventBus(identifier + "-" + i));
+}
+
+/**
+ * @param identifier a brief name for the event bus, for logging purposes
+ * @param shards the number of shards, 1 to 64
+ * @param shardFactory creates the i'th shard, for example an AsyncEventBus
+ */
+public ShardedEventBus(String identifier, int shards, IntFunction<EventBus> shardFactory)
+{
+    super(identifier);
+    if (shards < 1 || shards > 64)
+        throw new IllegalArgumentException("shards " + shards);
+    this.shards = new EventBus[shards];
+    for (int i = 0; i < shards; i++)
+        this.shards[i] = shardFactory.apply(i);
+}
+
+/** @return the number of shards */
+public int shards()
+{
+    return shards.length;
+}
+
+@Override
+public void register(Object object)
+{
+    Set<Class<?>> types = eventTypes.get(object.getClass());
+    synchronized(lock) {
+        if (shardOf.containsKey(object))
+            return;
+        int shard = shard(types);
+        shards[shard].register(object);
+        shardOf.put(object, shard);
+        for (Class<?> type : types)
+            subscribers.computeIfAbsent(type, k -> new AtomicIntegerArray(shards.length))
+                    .incrementAndGet(shard);
+        version.incrementAndGet();
+    }
+}
+
+@Override
+public void unregister(Object object)
+{
+    synchronized(lock) {
+        Integer shard = shardOf.remove(object);
+        if (shard == null)
+            throw new IllegalArgumentException(
+                    "missing event subscriber for an annotated method. Is "
+                    + object + " registered?");
+        for (Class<?> type : eventTypes.get(object.getClass()))
+            subscribers.get(type).decrementAndGet(shard);
+        version.incrementAndGet();
+        shards[shard].unregister(object);
+    }
+}
+
+@Override
+public void post(Object event)
+{
+    int[] targets = route(event.getClass());
+    if (targets.length == 0) {
+        if (!(event instanceof DeadEvent))
+            post(new DeadEvent(this, event));
+        return;
+    }
+    for (int shard : targets)
+        shards[shard].post(event);
+}
+
+/**
+ * An object's shard is determined by its first event type, by name;
+ * receivers of the same event type share a shard.
+ */
+private int shard(Set<Class<?>> types)
+{
+    return types.stream().map(Class::getName).min(Comparator.naturalOrder())
+            .map(name -> Math.floorMod(name.hashCode(), shards.length))
+            .orElse(0);
+}
+
+private int[] route(Class<?> eventClass)
+{
+    int v = version.get();
+    Route route = routes.get(eventClass);
+    if (route != null && route.version == v)
+        return route.shards;
+    long mask = 0;
+    for (Class<?> type : hierarchy.get(eventClass)) {
+        AtomicIntegerArray counts = subscribers.get(type);
+        if (counts == null)
+            continue;
+        for (int i = 0; i < shards.length; i++)
+            if (counts.get(i) > 0)
+                mask |= 1L << i;
+    }
+    int[] targets = new int[Long.bitCount(mask)];
+    for (int i = 0, n = 0; n < targets.length; i++)
+        if ((mask & 1L << i) != 0)
+            targets[n++] = i;
+    routes.put(eventClass, new Route(v, targets));
+    return targets;
+}
+}
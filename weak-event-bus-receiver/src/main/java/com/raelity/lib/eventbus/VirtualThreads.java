@@ -0,0 +1,68 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor for {@link WeakEventBus#newVirtualThreadEventBus}.
+ * A virtual thread per task executor if the JVM has virtual threads,
+ * found with reflection since this library is built for Java 11;
+ * otherwise a cached pool of daemon platform threads.
+ * Created on first use.
+ */
+final class VirtualThreads
+{
+private VirtualThreads() { }
+
+static final boolean AVAILABLE;
+static final ExecutorService EXECUTOR;
+
+static {
+    ExecutorService executor = null;
+    try {
+        MethodHandle mh = MethodHandles.publicLookup().findStatic(
+                Executors.class, "newVirtualThreadPerTaskExecutor",
+                MethodType.methodType(ExecutorService.class));
+        executor = (ExecutorService)mh.invokeExact();
+    } catch(NoSuchMethodException | IllegalAccessException ex) {
+        // Before Java 21.
+    } catch(UnsupportedOperationException ex) {
+        // Java 19 or 20 without --enable-preview.
+    } catch(RuntimeException | Error ex) {
+        throw ex;
+    } catch(Throwable ex) {
+        throw new IllegalStateException(ex);
+    }
+    AVAILABLE = executor != null;
+    if (executor == null) {
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "WeakEventBus-async-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    EXECUTOR = executor;
+}
+}
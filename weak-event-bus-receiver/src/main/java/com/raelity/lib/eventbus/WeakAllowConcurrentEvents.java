@@ -32,7 +32,7 @@ import java.lang.annotation.Target;
  * with {@link WeakSubscribe}.
  */
 @Target(ElementType.METHOD)
-@Retention(RetentionPolicy.SOURCE)
+@Retention(RetentionPolicy.RUNTIME)
 public @interface WeakAllowConcurrentEvents
 {
 }
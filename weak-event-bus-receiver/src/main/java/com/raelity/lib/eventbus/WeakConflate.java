@@ -0,0 +1,44 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a weak event subscriber method as only interested in the
+ * latest event; for example selection changed, or progress.
+ * <p>
+ * The generated weak receiver keeps only the newest undelivered event
+ * for the method, and delivers it with the
+ * {@link WeakEventBus#virtualThreadExecutor()}; an event that is
+ * superseded before it is delivered is dropped. Deliveries to the method
+ * are one at a time. See {@link ConflatingDelivery}.
+ * A {@link DirectWeakEventBus} does not conflate.
+ * <p>
+ * This does not mark the method, and so should be used in combination
+ * with {@link WeakSubscribe}. Conflated methods require the
+ * annotation processor.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WeakConflate
+{
+}
@@ -17,12 +17,26 @@
 
 package com.raelity.lib.eventbus;
 
-import java.lang.ref.Cleaner;
-import java.lang.reflect.Constructor;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.google.common.collect.MapMaker;
+import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.EventBus;
 
 /**
@@ -34,9 +48,12 @@ import com.google.common.eventbus.EventBus;
  * The generated class file
  * is in the same package as the strong event bus.
  * <p>
- * This class has a {@linkplain java.lang.ref.Cleaner} which,
+ * This class has a reaper thread which,
  * when the strong event bus receiver becomes unreachable,
- * unregister's this weak event bus receiver from the EventBus.
+ * unregister's this weak event bus receiver from all of its EventBuses.
+ * If an event is delivered to the weak receiver before then,
+ * the weak receiver queues its own removal.
+ * Collected receivers are unregistered in batches, grouped by event bus.
  * 
  * See {@link WeakSubscribe} {@link WeakAllowConcurrentEvents}
  */
@@ -44,35 +61,336 @@ public class WeakEventBus
 {
 private WeakEventBus() { }
 
-private static final Cleaner cleaner = Cleaner.create();
-
 /**
  * Construct an EventBus receiver that only has a weak reference to
  * "stringBR". Register it to the specified EventBus.
+ * A receiver may be registered with any number of event buses,
+ * they share one weak receiver;
+ * registering it again with the same event bus does nothing.
  * @param strongBR the event bus receiver to weakly reference
  * @param eventBus the event bus
  */
 public static void register(Object strongBR, EventBus eventBus)
 {
-    Class<?> clazz = strongBR.getClass();
+    register(strongBR, eventBus, null, null);
+}
+
+/**
+ * Register, as {@link #register(Object, EventBus)}, with a reference
+ * strength other than the class's default. The strength is that of
+ * the weak receiver shared by all of the receiver's event buses;
+ * it is set by the first registration.
+ * @param strongBR the event bus receiver to reference
+ * @param eventBus the event bus
+ * @param strength how strongly the weak receiver references strongBR
+ * @throws IllegalArgumentException if the receiver is registered,
+ *         with any event bus, with a different strength
+ */
+public static void register(Object strongBR, EventBus eventBus,
+                            ReferenceStrength strength)
+{
+    register(strongBR, eventBus, null, strength);
+}
+
+/**
+ * @param scope the scope to add the registration to, may be null
+ * @param strength the reference strength, null for the class's default
+ */
+static void register(Object strongBR, EventBus eventBus,
+                     WeakEventBusScope scope, ReferenceStrength strength)
+{
+    if (!WeakEventBusMetrics.enabled) {
+        doRegister(strongBR, eventBus, scope, strength);
+        return;
+    }
+    long start = System.nanoTime();
+    doRegister(strongBR, eventBus, scope, strength);
+    WeakEventBusMetrics.INSTANCE.register(System.nanoTime() - start);
+}
+
+/**
+ * Post each of the events to the event bus, in order. Batched
+ * {@link WeakSubscribe} methods receive them in as few lists as
+ * their batch size allows.
+ * @param eventBus the event bus
+ * @param events events to post
+ */
+public static void postAll(EventBus eventBus, Iterable<?> events)
+{
+    for (Object event : events)
+        eventBus.post(event);
+}
+
+/**
+ * Create a registration scope. Receivers registered through the scope
+ * are unregistered together when it is closed.
+ * <pre>
+ * scope = WeakEventBus.scope();
+ * scope.register(br1, bus1);
+ * scope.register(br2, bus2);
+ * ...
+ * scope.close();
+ * </pre>
+ * @return a new scope
+ */
+public static WeakEventBusScope scope()
+{
+    return new WeakEventBusScope();
+}
+
+/**
+ * The manifest of generated weak receivers, written by the annotation
+ * processor with the option {@code -Aweakeventbus.manifest=true}.
+ * Each line is the binary name of a weak receiver and of its receiver.
+ */
+public static final String MANIFEST = "META-INF/weak-event-bus/receivers";
+
+/**
+ * Preload and initialize, in the background, the weak receivers listed
+ * in the {@link #MANIFEST}s found by the thread's context class loader.
+ * @return completes with the number of receivers warmed up
+ * @see #warmUp(ClassLoader)
+ */
+public static CompletableFuture<Integer> warmUp()
+{
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    return warmUp(loader != null ? loader : WeakEventBus.class.getClassLoader());
+}
+
+/**
+ * Preload and initialize, on a low priority daemon thread, the weak
+ * receivers listed in the {@link #MANIFEST}s found by the class loader,
+ * so that the first registration of each receiver does not load, link
+ * and initialize them. The receiver classes are loaded but not
+ * initialized. Entries that can not be loaded are skipped.
+ * <p>
+ * A run that waits for the warm-up loads every generated class,
+ * which makes it a good training run for an AppCDS archive.
+ * @param loader loads the manifests and the classes
+ * @return completes with the number of receivers warmed up
+ */
+public static CompletableFuture<Integer> warmUp(ClassLoader loader)
+{
+    CompletableFuture<Integer> done = new CompletableFuture<>();
+    Thread thread = new Thread(() -> {
+        try {
+            done.complete(doWarmUp(loader));
+        } catch(Throwable ex) {
+            done.completeExceptionally(ex);
+        }
+    }, "WeakEventBus-warmup");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+    return done;
+}
+
+private static int doWarmUp(ClassLoader loader) throws IOException
+{
+    int count = 0;
+    for (String[] entry : manifest(loader)) {
+        try {
+            Class.forName(entry[0], true, loader);
+            Class<?> cls = Class.forName(entry[1], false, loader);
+            factories.get(cls);
+            indexes.get(cls);
+            count++;
+        } catch(ClassNotFoundException | LinkageError | RuntimeException ex) {
+            // Probably a stale manifest.
+            Logger logger = Logger.getLogger(WeakEventBus.class.getName());
+            if (logger.isLoggable(Level.FINE))
+                logger.log(Level.FINE, "warm up " + entry[1], ex);
+        }
+    }
+    return count;
+}
+
+/**
+ * Read all the manifests.
+ * @return pairs of weak receiver and receiver binary names
+ */
+private static List<String[]> manifest(ClassLoader loader) throws IOException
+{
+    List<String[]> entries = new ArrayList<>();
+    Enumeration<URL> urls = loader.getResources(MANIFEST);
+    while (urls.hasMoreElements()) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                urls.nextElement().openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] entry = line.trim().split("\\s+");
+                if (entry.length == 2)
+                    entries.add(entry);
+            }
+        }
+    }
+    return entries;
+}
+
+/**
+ * Create an event bus that delivers each event on its own virtual thread;
+ * register weak receivers with it as usual. Subscriber methods with
+ * {@link WeakAllowConcurrentEvents} run in parallel, the others are
+ * serialized by the weak receiver with a lock that does not pin the
+ * virtual thread's carrier.
+ * <p>
+ * Before Java 21 there are no virtual threads; a shared cached pool
+ * of daemon platform threads is used.
+ * @param identifier a brief name for the event bus, for logging purposes
+ * @return an AsyncEventBus using {@link #virtualThreadExecutor()}
+ */
+public static AsyncEventBus newVirtualThreadEventBus(String identifier)
+{
+    return new AsyncEventBus(identifier, VirtualThreads.EXECUTOR);
+}
+
+/**
+ * The shared executor used by {@link #newVirtualThreadEventBus};
+ * a new virtual thread per task if {@link #hasVirtualThreads()}.
+ * @return the executor
+ */
+public static Executor virtualThreadExecutor()
+{
+    return VirtualThreads.EXECUTOR;
+}
+
+/**
+ * @return true if {@link #virtualThreadExecutor()} uses virtual threads
+ */
+public static boolean hasVirtualThreads()
+{
+    return VirtualThreads.AVAILABLE;
+}
+
+private static void doRegister(Object strongBR, EventBus eventBus,
+                               WeakEventBusScope scope, ReferenceStrength strength)
+{
+    Registration registration = registered.get(strongBR);
+    if (registration == null)
+        registration = newRegistration(strongBR, strength);
+    // The weak receiver is shared; its strength can not change.
+    ReferenceStrength current = registration.weakBR().referenceStrength();
+    if (strength != null && !strength.equals(current))
+        throw new IllegalArgumentException(String.format(
+                "%s is registered with strength %s, not %s",
+                strongBR.getClass().getName(), current, strength));
+    // Register the shared weak event bus receiver to the event bus.
+    registration.register(eventBus, scope);
+}
+
+/**
+ * Create the weak EB receiver that weak references the strong EB receiver,
+ * and its registration; unless another thread got there first.
+ */
+private static Registration newRegistration(Object strongBR, ReferenceStrength strength)
+{
+    AbstractWeakReceiver<?> weakBR = factories.get(strongBR.getClass()).create(strongBR);
+    if (strength != null)
+        weakBR.strength(strength);
+    // When the strong event bus becomes unreachable, the registration
+    // is queued to the reaper which unregisters the weak receiver
+    // from all of its event buses.
+    Registration registration = new Registration(strongBR, weakBR);
+    Registration prior = registered.putIfAbsent(strongBR, registration);
+    if (prior != null) {
+        // Lost the race; the reaper never sees this one.
+        registration.clear();
+        return prior;
+    }
+    weakBR.registration = registration;
+    if (WeakEventBusDiagnostics.sampling != 0)
+        WeakEventBusDiagnostics.INSTANCE.registered(strongBR, registration);
+    return registration;
+}
+
+/**
+ * Get the factory, generated or created at runtime, for a strong
+ * event bus receiver class.
+ * @param clazz strong receiver class
+ * @return the factory
+ * @throws IllegalStateException if there is no factory
+ */
+static WeakReceiverFactory factory(Class<?> clazz)
+{
+    return factories.get(clazz);
+}
+
+/**
+ * Get the subscriber index, generated or created at runtime, for a strong
+ * event bus receiver class.
+ * @param clazz strong receiver class
+ * @return the subscriber index
+ * @throws IllegalStateException if there is no index
+ */
+static WeakSubscriberIndex index(Class<?> clazz)
+{
+    return indexes.get(clazz);
+}
+
+/**
+ * The generated factory for each strong event bus receiver class.
+ * The reflection to find the factory is done once per class.
+ * If there is no generated factory, the weak receiver class
+ * is generated at runtime.
+ */
+private static final ClassValue<WeakReceiverFactory> factories
+        = new ClassValue<WeakReceiverFactory>() {
+    @Override
+    protected WeakReceiverFactory computeValue(Class<?> clazz)
+    {
+        try {
+            return (WeakReceiverFactory)generated(clazz, "$Factory");
+        } catch(ClassNotFoundException ex) {
+            // The annotation processor did not run for this class.
+            try {
+                return RuntimeReceiverGenerator.factory(clazz);
+            } catch(IllegalStateException ex01) {
+                ex01.addSuppressed(ex);
+                throw ex01;
+            }
+        }
+    }
+};
+
+/**
+ * The generated subscriber index for each strong event bus receiver class.
+ * Finding it does not load the generated weak receiver class.
+ * If there is no generated index, one is created with reflection.
+ */
+private static final ClassValue<WeakSubscriberIndex> indexes
+        = new ClassValue<WeakSubscriberIndex>() {
+    @Override
+    protected WeakSubscriberIndex computeValue(Class<?> clazz)
+    {
+        try {
+            return (WeakSubscriberIndex)generated(clazz, "$Index");
+        } catch(ClassNotFoundException ex) {
+            try {
+                return RuntimeReceiverGenerator.index(clazz);
+            } catch(IllegalStateException ex01) {
+                ex01.addSuppressed(ex);
+                throw ex01;
+            }
+        }
+    }
+};
+
+/**
+ * Instantiate a class nested in the generated weak receiver class.
+ * @param clazz the strong receiver class
+ * @param nested "$" and the nested class's name
+ */
+private static Object generated(Class<?> clazz, String nested)
+        throws ClassNotFoundException
+{
     // Derive the name of the generated class from the strong bus receiver.
     String nameWeakBR = WeakEventBusProcessor.nameWeakBR(
             clazz.getName(), clazz.getPackageName());
     try {
-        // weakClazz is the generated class that hold a
-        // weak reference to the strong EB receiver.
-        Class<?> weakClazz = Class.forName(clazz.getPackageName() + "." + nameWeakBR);
-        Constructor<?> ctor = weakClazz.getConstructor(clazz);
-        // Create the weak EB receiver that weak references the strong EB receiver.
-        Object weakBR = ctor.newInstance(strongBR);
-        // Register the weak event bus to the event bus.
-        eventBus.register(weakBR);
-        // When the strong event bus becomes unreachable, unregister the weark
-        WeakEventBus.cleaner.register(strongBR, () -> {
-            eventBus.unregister(weakBR);
-        });
-        registered.put(strongBR, weakBR);
-    } catch(ClassNotFoundException | NoSuchMethodException | SecurityException |
+        return Class.forName(clazz.getPackageName() + "." + nameWeakBR + nested,
+                             true, clazz.getClassLoader())
+                .getDeclaredConstructor().newInstance();
+    } catch(NoSuchMethodException | SecurityException |
             InstantiationException | IllegalAccessException |
             IllegalArgumentException | InvocationTargetException ex) {
         throw new IllegalStateException(String.format(
@@ -80,13 +398,87 @@ public static void register(Object strongBR, EventBus eventBus)
     }
 }
 
-// With MapMaker, weak keys and values.
-private static Map<Object, Object> registered = new MapMaker()
-        .concurrencyLevel(1)
+/**
+ * Map of strong receiver to its registration, which has the weak
+ * receiver and the event buses it is registered with;
+ * weak keys, identity equality.
+ */
+private static final Map<Object, Registration> registered
+        = new MapMaker()
+        .concurrencyLevel(Math.max(4, Runtime.getRuntime().availableProcessors() * 2))
         .weakKeys()
-        .weakValues()
         .makeMap();
 
+/**
+ * Count the registered weak receivers whose strong receiver is alive.
+ * @return map of EventBus identifier to count
+ */
+static Map<String, Long> liveReceiversByBus()
+{
+    Map<String, Long> counts = new TreeMap<>();
+    for (Registration registration : registered.values()) {
+        if (registration.get() == null)
+            continue;
+        for (EventBus eb : registration.eventBuses())
+            counts.merge(eb.identifier(), 1L, Long::sum);
+    }
+    return counts;
+}
+
+/**
+ * The metrics for weak event bus receivers; off by default.
+ * @return the metrics
+ */
+public static WeakEventBusMetrics metrics()
+{
+    return WeakEventBusMetrics.INSTANCE;
+}
+
+/**
+ * Leak diagnostics for receivers that stay alive; off by default.
+ * @return the diagnostics
+ */
+public static WeakEventBusDiagnostics diagnostics()
+{
+    return WeakEventBusDiagnostics.INSTANCE;
+}
+
+/**
+ * Set the ThreadFactory for the reaper thread, which unregisters
+ * the weak receivers of collected strong receivers; for example
+ * a virtual thread factory. Must be called before the first
+ * weak receiver is registered. The default is a daemon platform thread.
+ * @param factory creates the reaper thread
+ * @throws IllegalStateException if the reaper thread has started
+ */
+public static void setReaperThreadFactory(ThreadFactory factory)
+{
+    Reaper.setThreadFactory(factory);
+}
+
+/**
+ * After the reaper sees the first collected receiver it waits this long
+ * for more to collect, and then unregisters them together.
+ * The default is 10 milliseconds.
+ * @param delay time to wait, may be zero
+ * @param unit unit of delay
+ */
+public static void setReaperDelay(long delay, TimeUnit unit)
+{
+    Reaper.setDelay(delay, unit);
+}
+
+/**
+ * Unregister, in the calling thread, the weak receivers of strong
+ * receivers that have been collected and queued for cleanup.
+ * Mostly for testing: after garbage collection, this
+ * makes the unregister happen now.
+ */
+public static void reap()
+{
+    Reaper.reap();
+}
+
 /**
  * Unregisters all subscriber methods on a registered object
  * from the specified EventBus.
@@ -95,8 +487,8 @@ private static Map<Object, Object> registered = new MapMaker()
  */
 public static void unregister(Object strongBR, EventBus eventBus)
 {
-    Object weakBR = registered.remove(strongBR);
-    if (weakBR != null)
-        eventBus.unregister(weakBR);
+    Registration registration = registered.get(strongBR);
+    if (registration != null)
+        registration.unregister(eventBus);
 }
 }
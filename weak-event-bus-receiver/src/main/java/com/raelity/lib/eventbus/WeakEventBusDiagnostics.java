@@ -0,0 +1,240 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Leak hunting for receivers that stay alive longer than expected,
+ * because of strong references outside the event bus; get it with
+ * {@link WeakEventBus#diagnostics()}. Off by default.
+ * <p>
+ * When on, one in {@link #setSampling(int) N} registrations is sampled:
+ * the registration's time and call site, the first few frames outside
+ * this library found with a {@link StackWalker}, are remembered for as long
+ * as the receiver is registered. {@link #longLivedReceivers} reports
+ * the sampled receivers alive past a given age, grouped by receiver
+ * class and registration site. Counts are of sampled registrations.
+ * <p>
+ * When off, registration only reads a volatile field.
+ */
+public final class WeakEventBusDiagnostics
+{
+static final WeakEventBusDiagnostics INSTANCE = new WeakEventBusDiagnostics();
+
+/** Sample one in this many registrations; 0 is off. */
+static volatile int sampling;
+
+private static final String PACKAGE = WeakEventBusDiagnostics.class.getPackageName();
+private static final StackWalker WALKER = StackWalker.getInstance();
+
+private volatile int stackDepth = 3;
+private final Queue<Sample> samples = new ConcurrentLinkedQueue<>();
+private final AtomicInteger added = new AtomicInteger();
+
+private WeakEventBusDiagnostics() { }
+
+/** A sampled registration. */
+private static final class Sample
+{
+private final Registration registration;
+private final String receiverClass;
+private final String site;
+private final long nanos = System.nanoTime();
+
+private Sample(Registration registration, String receiverClass, String site)
+{
+    this.registration = registration;
+    this.receiverClass = receiverClass;
+    this.site = site;
+}
+}
+
+/**
+ * Receivers of one class, registered at one site,
+ * that are alive past the age asked for.
+ */
+public static final class LongLivedReceivers
+{
+private final String receiverClass;
+private final String site;
+private final int count;
+private final long oldestMillis;
+
+private LongLivedReceivers(String receiverClass, String site,
+                           int count, long oldestMillis)
+{
+    this.receiverClass = receiverClass;
+    this.site = site;
+    this.count = count;
+    this.oldestMillis = oldestMillis;
+}
+
+/** @return the receiver's class name */
+public String receiverClass()
+{
+    return receiverClass;
+}
+
+/** @return the registration's call stack, innermost first */
+public String site()
+{
+    return site;
+}
+
+/** @return the number of sampled registrations */
+public int count()
+{
+    return count;
+}
+
+/** @return the age of the oldest registration in milliseconds */
+public long oldestMillis()
+{
+    return oldestMillis;
+}
+
+@Override
+public String toString()
+{
+    return String.format("%d %s, oldest %d ms, registered at %s",
+                         count, receiverClass, oldestMillis, site);
+}
+}
+
+/**
+ * Sample one in every {@code oneIn} registrations; 1 samples every
+ * registration, 0 turns diagnostics off and forgets the samples.
+ * @param oneIn the sampling interval
+ */
+public void setSampling(int oneIn)
+{
+    if (oneIn < 0)
+        throw new IllegalArgumentException("sampling " + oneIn);
+    sampling = oneIn;
+    if (oneIn == 0)
+        samples.clear();
+}
+
+/** @return the sampling interval, 0 if off */
+public int getSampling()
+{
+    return sampling;
+}
+
+/**
+ * @param depth the number of frames kept for a registration site; default 3
+ */
+public void setStackDepth(int depth)
+{
+    if (depth <= 0)
+        throw new IllegalArgumentException("depth " + depth);
+    stackDepth = depth;
+}
+
+/** Forget all the samples. */
+public void reset()
+{
+    samples.clear();
+}
+
+/**
+ * Called for each new registration, if sampling.
+ */
+void registered(Object strongBR, Registration registration)
+{
+    int oneIn = sampling;
+    if (oneIn == 0 || oneIn > 1 && ThreadLocalRandom.current().nextInt(oneIn) != 0)
+        return;
+    int depth = stackDepth;
+    String site = WALKER.walk(frames -> frames
+            .dropWhile(f -> isLibrary(f.getClassName()))
+            .limit(depth)
+            .map(StackWalker.StackFrame::toString)
+            .collect(Collectors.joining(" <- ")));
+    samples.add(new Sample(registration, strongBR.getClass().getName(), site));
+    // Now and then, forget the unregistered.
+    if ((added.incrementAndGet() & 1023) == 0)
+        samples.removeIf(s -> !s.registration.isLive());
+}
+
+private static boolean isLibrary(String className)
+{
+    int dot = className.lastIndexOf('.');
+    return dot == PACKAGE.length() && className.startsWith(PACKAGE);
+}
+
+/**
+ * The sampled receivers that are still registered, and alive, after the
+ * given time; grouped by class and registration site, most first.
+ * @param age the minimum time since registration
+ * @param unit the age's unit
+ * @return the long lived receivers
+ */
+public List<LongLivedReceivers> longLivedReceivers(long age, TimeUnit unit)
+{
+    long now = System.nanoTime();
+    long minNanos = unit.toNanos(age);
+    Map<List<String>, long[]> groups = new LinkedHashMap<>();
+    for (Iterator<Sample> it = samples.iterator(); it.hasNext();) {
+        Sample s = it.next();
+        if (!s.registration.isLive()) {
+            it.remove();
+            continue;
+        }
+        long nanos = now - s.nanos;
+        if (nanos < minNanos)
+            continue;
+        // count, oldest
+        long[] group = groups.computeIfAbsent(List.of(s.receiverClass, s.site),
+                                              k -> new long[2]);
+        group[0]++;
+        group[1] = Math.max(group[1], nanos);
+    }
+    List<LongLivedReceivers> report = new ArrayList<>(groups.size());
+    groups.forEach((k, v) -> report.add(new LongLivedReceivers(
+            k.get(0), k.get(1), (int)v[0], TimeUnit.NANOSECONDS.toMillis(v[1]))));
+    report.sort(Comparator.comparingInt(LongLivedReceivers::count).reversed()
+            .thenComparing(Comparator.comparingLong(LongLivedReceivers::oldestMillis)
+                    .reversed()));
+    return report;
+}
+
+/**
+ * @param age the minimum time since registration
+ * @param unit the age's unit
+ * @return {@link #longLivedReceivers}, one group per line
+ */
+public String report(long age, TimeUnit unit)
+{
+    return longLivedReceivers(age, unit).stream()
+            .map(LongLivedReceivers::toString)
+            .collect(Collectors.joining("\n"));
+}
+}
@@ -0,0 +1,67 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link WeakEventBusMetrics}.
+ * Registered by {@link WeakEventBusMetrics#registerMBean()} as
+ * {@value WeakEventBusMetrics#OBJECT_NAME}.
+ */
+public interface WeakEventBusMXBean
+{
+boolean isEnabled();
+void setEnabled(boolean enabled);
+void reset();
+
+/** @return number of registered weak receivers with a live strong receiver */
+long getLiveReceivers();
+/** @return live weak receivers keyed by EventBus identifier */
+Map<String, Long> getLiveReceiversByBus();
+
+/** @return deliveries to a weak receiver whose strong receiver was collected */
+long getDeadDeliveries();
+
+/** @return events dropped by a {@link WeakConflate} method, superseded */
+long getConflatedEvents();
+
+/** @return events dropped by full {@link WeakMailbox} mailboxes */
+long getMailboxDrops();
+/** @return mailbox drops keyed by strong receiver class; find slow receivers */
+Map<String, Long> getMailboxDropsByReceiver();
+
+/** @return weak receivers unregistered by the reaper */
+long getCleanups();
+/**
+ * The cleanup latency is from when the reaper, or a delivery, first sees
+ * a dead receiver until it is unregistered; it includes the reaper's
+ * delay, not the time before the GC queues the reference.
+ * @return average time from a dead receiver being queued until unregistered
+ */
+double getCleanupLatencyAverageMillis();
+/** @return maximum time from a dead receiver being queued until unregistered */
+double getCleanupLatencyMaxMillis();
+
+/** @return number of calls to WeakEventBus.register */
+long getRegistrations();
+/** @return average time for WeakEventBus.register */
+double getRegisterAverageMicros();
+/** @return maximum time for WeakEventBus.register */
+double getRegisterMaxMicros();
+}
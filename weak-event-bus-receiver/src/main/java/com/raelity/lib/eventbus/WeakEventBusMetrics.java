@@ -0,0 +1,229 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters for the weak event bus layer; get it with
+ * {@link WeakEventBus#metrics()}. Collection is off by default.
+ * <p>
+ * The counters are {@link LongAdder}s; updating them does not
+ * synchronize. Nothing is counted on the delivery path of a live
+ * weak receiver; only deliveries that find the strong receiver
+ * collected are counted. The live receiver counts are computed
+ * from the registrations when asked for, and are always available.
+ * Mailbox drops are always counted.
+ * <p>
+ * Optionally, {@link #registerMBean()} makes the metrics available
+ * through JMX.
+ */
+public final class WeakEventBusMetrics implements WeakEventBusMXBean
+{
+/** The JMX object name. */
+public static final String OBJECT_NAME = "com.raelity.lib.eventbus:type=WeakEventBus";
+
+static final WeakEventBusMetrics INSTANCE = new WeakEventBusMetrics();
+
+/** Checked before any counting. */
+static volatile boolean enabled;
+
+private final LongAdder deadDeliveries = new LongAdder();
+private final LongAdder conflated = new LongAdder();
+private final LongAdder cleanups = new LongAdder();
+private final LongAdder cleanupNanos = new LongAdder();
+private final LongAccumulator cleanupMaxNanos = new LongAccumulator(Math::max, 0);
+private final LongAdder registrations = new LongAdder();
+private final LongAdder registerNanos = new LongAdder();
+private final LongAccumulator registerMaxNanos = new LongAccumulator(Math::max, 0);
+
+private WeakEventBusMetrics() { }
+
+void deadDelivery()
+{
+    deadDeliveries.increment();
+}
+
+void conflated()
+{
+    conflated.increment();
+}
+
+void cleanup(long nanos)
+{
+    cleanups.increment();
+    cleanupNanos.add(nanos);
+    cleanupMaxNanos.accumulate(nanos);
+}
+
+void register(long nanos)
+{
+    registrations.increment();
+    registerNanos.add(nanos);
+    registerMaxNanos.accumulate(nanos);
+}
+
+@Override
+public boolean isEnabled()
+{
+    return enabled;
+}
+
+@Override
+public void setEnabled(boolean enabled)
+{
+    WeakEventBusMetrics.enabled = enabled;
+}
+
+@Override
+public void reset()
+{
+    deadDeliveries.reset();
+    conflated.reset();
+    Mailbox.resetDrops();
+    cleanups.reset();
+    cleanupNanos.reset();
+    cleanupMaxNanos.reset();
+    registrations.reset();
+    registerNanos.reset();
+    registerMaxNanos.reset();
+}
+
+@Override
+public long getLiveReceivers()
+{
+    return WeakEventBus.liveReceiversByBus().values().stream()
+            .mapToLong(Long::longValue).sum();
+}
+
+@Override
+public Map<String, Long> getLiveReceiversByBus()
+{
+    return WeakEventBus.liveReceiversByBus();
+}
+
+@Override
+public long getDeadDeliveries()
+{
+    return deadDeliveries.sum();
+}
+
+@Override
+public long getConflatedEvents()
+{
+    return conflated.sum();
+}
+
+@Override
+public long getMailboxDrops()
+{
+    return Mailbox.drops();
+}
+
+@Override
+public Map<String, Long> getMailboxDropsByReceiver()
+{
+    return Mailbox.dropsByReceiver();
+}
+
+@Override
+public long getCleanups()
+{
+    return cleanups.sum();
+}
+
+@Override
+public double getCleanupLatencyAverageMillis()
+{
+    return average(cleanupNanos, cleanups, TimeUnit.MILLISECONDS);
+}
+
+@Override
+public double getCleanupLatencyMaxMillis()
+{
+    return (double)cleanupMaxNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+}
+
+@Override
+public long getRegistrations()
+{
+    return registrations.sum();
+}
+
+@Override
+public double getRegisterAverageMicros()
+{
+    return average(registerNanos, registrations, TimeUnit.MICROSECONDS);
+}
+
+@Override
+public double getRegisterMaxMicros()
+{
+    return (double)registerMaxNanos.get() / TimeUnit.MICROSECONDS.toNanos(1);
+}
+
+private static double average(LongAdder nanos, LongAdder count, TimeUnit unit)
+{
+    long n = count.sum();
+    return n == 0 ? 0 : (double)nanos.sum() / n / unit.toNanos(1);
+}
+
+/**
+ * Register with the platform MBean server as {@value #OBJECT_NAME}.
+ * Does nothing if already registered.
+ * @throws IllegalStateException if the registration fails
+ */
+public void registerMBean()
+{
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+        server.registerMBean(this, new ObjectName(OBJECT_NAME));
+    } catch(InstanceAlreadyExistsException ex) {
+        // Already there.
+    } catch(JMException ex) {
+        throw new IllegalStateException("WeakEventBus MBean registration failed", ex);
+    }
+}
+
+/**
+ * Remove from the platform MBean server.
+ * Does nothing if not registered.
+ * @throws IllegalStateException if the unregistration fails
+ */
+public void unregisterMBean()
+{
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+        server.unregisterMBean(new ObjectName(OBJECT_NAME));
+    } catch(InstanceNotFoundException ex) {
+        // Not there.
+    } catch(JMException ex) {
+        throw new IllegalStateException("WeakEventBus MBean unregistration failed", ex);
+    }
+}
+}
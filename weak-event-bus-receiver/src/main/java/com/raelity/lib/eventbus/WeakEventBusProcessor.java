@@ -19,12 +19,16 @@ package com.raelity.lib.eventbus;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.StringJoiner;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Processor;
@@ -36,18 +40,31 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
 import javax.tools.Diagnostic;
+import javax.tools.FileObject;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 
 import org.openide.util.lookup.ServiceProvider;
 
 /**
  * Process annotations for creating a weak event bus receiver.
+ * <p>
+ * With the option {@code weakeventbus.manifest=true} the processor
+ * also writes the {@link WeakEventBus#MANIFEST} of the weak receivers
+ * it generated; that makes it an aggregating processor for Gradle,
+ * otherwise it is isolating.
  */
 @SupportedAnnotationTypes({"com.raelity.lib.eventbus.WeakSubscribe",
-    "com.raelity.lib.eventbus.WeakAllowConcurrentEvents"})
+    "com.raelity.lib.eventbus.WeakAllowConcurrentEvents",
+    "com.raelity.lib.eventbus.WeakConflate",
+    "com.raelity.lib.eventbus.WeakMailbox",
+    "com.raelity.lib.eventbus.WeakStrength"})
 @SupportedSourceVersion(SourceVersion.RELEASE_11)
 @SuppressWarnings("ObsoleteAnnotationSupportedSource")
 @ServiceProvider(service=Processor.class)
@@ -60,26 +77,64 @@ private static void P(@SuppressWarnings("unused") String fmt,
     String s = args.length == 0 ? fmt : String.format(fmt, args);
     System.out.printf(s);
 }
-private enum Annotation { SUBSCRIBE, CONCURRENT }
+private enum Annotation { SUBSCRIBE, CONCURRENT, CONFLATE }
 private static final String WEAK_SUBSCRIBE = "com.raelity.lib.eventbus.WeakSubscribe";
 private static final String WEAK_CONCURRENT = "com.raelity.lib.eventbus.WeakAllowConcurrentEvents";
+private static final String WEAK_CONFLATE = "com.raelity.lib.eventbus.WeakConflate";
+private static final String WEAK_MAILBOX = "com.raelity.lib.eventbus.WeakMailbox";
+private static final String WEAK_STRENGTH = "com.raelity.lib.eventbus.WeakStrength";
 
-// Map<class, Map<method,annotations>>
-private Map<TypeElement, Map<ExecutableElement, Set<Annotation>>> classesAndMethods = new HashMap<>();
+// Map<class, Map<method,annotations>>; only the current round's classes.
+private final Map<TypeElement, Map<ExecutableElement, Set<Annotation>>> classesAndMethods = new HashMap<>();
+// Weak receivers already generated, by qualified name.
+private final Set<String> generated = new HashSet<>();
+// Manifest lines and their receivers, if there is a manifest.
+private final List<String> manifest = new ArrayList<>();
+private final List<Element> manifestOrigins = new ArrayList<>();
+
+private static final String MANIFEST_OPTION = "weakeventbus.manifest";
+
+@Override
+public Set<String> getSupportedOptions()
+{
+    return Set.of(MANIFEST_OPTION, processingEnv != null && manifestEnabled()
+                  ? "org.gradle.annotation.processing.aggregating"
+                  : "org.gradle.annotation.processing.isolating");
+}
+
+private boolean manifestEnabled()
+{
+    return Boolean.parseBoolean(processingEnv.getOptions().get(MANIFEST_OPTION));
+}
 
 @Override
 public boolean process(Set<? extends TypeElement> annotations,
                        RoundEnvironment roundEnv)
 {
     //P("PROCESSOR: %s\n", annotations);
+    if (roundEnv.processingOver()) {
+        if (!manifest.isEmpty())
+            writeManifest();
+        return false;
+    }
     if (annotations.isEmpty())
         return false;
 
     // Scan the annotations and collect map of class to its methods: classesAndMethods.
     for (TypeElement annotation : annotations) {
         String annotName = annotation.toString();
+        if (annotName.equals(WEAK_MAILBOX)) {
+            // On the class; checked when the class is generated.
+            checkMailboxes(roundEnv.getElementsAnnotatedWith(annotation));
+            continue;
+        }
+        if (annotName.equals(WEAK_STRENGTH)) {
+            checkStrengths(roundEnv.getElementsAnnotatedWith(annotation));
+            continue;
+        }
         Annotation annot = annotName.equals(WEAK_SUBSCRIBE) ? Annotation.SUBSCRIBE
                            :annotName.equals(WEAK_CONCURRENT) ? Annotation.CONCURRENT 
+                           :annotName.equals(WEAK_CONFLATE) ? Annotation.CONFLATE
                             : null; // null impossible (at least for now)
         Set<? extends Element> annotatedElements
                 = roundEnv.getElementsAnnotatedWith(annotation);
@@ -123,6 +178,35 @@ public boolean process(Set<? extends TypeElement> annotations,
                 processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
                         String.format("%s::%s @AllowConcurrentEvents without @Subscribe",
                         classElement, methodElement.getSimpleName()));
+            WeakSubscribe ws = methodElement.getAnnotation(WeakSubscribe.class);
+            if (ws != null && ws.batchSize() != 0 && pt.size() == 1) {
+                if (ws.batchSize() < 0 || ws.batchMillis() <= 0)
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            String.format("%s::%s @WeakSubscribe batchSize and batchMillis must be positive",
+                            classElement, methodElement.getSimpleName()));
+                else if (listElementType(pt.get(0)) == null)
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            String.format("%s::%s batched @WeakSubscribe parameter is not java.util.List<E>",
+                            classElement, methodElement.getSimpleName()));
+                if (annos.contains(Annotation.CONCURRENT))
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            String.format("%s::%s batched @WeakSubscribe can not be @WeakAllowConcurrentEvents",
+                            classElement, methodElement.getSimpleName()));
+                if (annos.contains(Annotation.CONFLATE))
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            String.format("%s::%s batched @WeakSubscribe can not be @WeakConflate",
+                            classElement, methodElement.getSimpleName()));
+            }
+            if(annos.contains(Annotation.CONFLATE)
+                    && !annos.contains(Annotation.SUBSCRIBE))
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        String.format("%s::%s @WeakConflate without @Subscribe",
+                        classElement, methodElement.getSimpleName()));
+            if(annos.contains(Annotation.CONFLATE)
+                    && annos.contains(Annotation.CONCURRENT))
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        String.format("%s::%s @WeakConflate can not be @WeakAllowConcurrentEvents",
+                        classElement, methodElement.getSimpleName()));
             if (annos.contains(Annotation.SUBSCRIBE)
                     && methodElement.getModifiers().contains(Modifier.PRIVATE))
                 processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
@@ -143,6 +227,7 @@ public boolean process(Set<? extends TypeElement> annotations,
             break;
         }
     }
+    classesAndMethods.clear();
     return true;
 }
 
@@ -154,36 +239,233 @@ private void generateSourceFile(TypeElement classElement,
             .getPackageOf(classElement).getQualifiedName().toString();
     String strongClassName = classElement.asType().toString();
     String weakClassName = nameWeakBR(strongClassName, pkg);
+    if (!generated.add(pkg + "." + weakClassName))
+        return;
+    if (manifestEnabled()) {
+        manifest.add(pkg + "." + weakClassName + " " + processingEnv.getElementUtils()
+                .getBinaryName(classElement));
+        manifestOrigins.add(classElement);
+    }
+
+    // Only the methods with @WeakSubscribe, and one parameter (others
+    // have been reported); sorted for a stable output.
+    List<Entry<ExecutableElement, Set<Annotation>>> subscribers = new ArrayList<>();
+    for(Entry<ExecutableElement, Set<Annotation>> entry : methAnnos.entrySet()) {
+        if (entry.getValue().contains(Annotation.SUBSCRIBE)
+                && entry.getKey().getParameters().size() == 1)
+            subscribers.add(entry);
+    }
+    subscribers.sort(Comparator.comparing(
+            (Entry<ExecutableElement, Set<Annotation>> e) -> e.getKey().toString()));
+
+    // All the plain subscriber methods go through the mailbox, if any.
+    WeakMailbox mailbox = classElement.getAnnotation(WeakMailbox.class);
+    StringJoiner mailCases = new StringJoiner("\n");
 
+    // The subscriber index, used by DirectWeakEventBus.
+    StringJoiner names = new StringJoiner(", ");
+    StringJoiner eventClasses = new StringJoiner(", ");
+    StringJoiner concurrents = new StringJoiner(", ");
+    StringJoiner cases = new StringJoiner("\n");
+    int number = 0;
+    int serialMethods = 0;
+    for(Entry<ExecutableElement, Set<Annotation>> entry : subscribers) {
+        ExecutableElement method = entry.getKey();
+        TypeMirror paramType = ((ExecutableType)method.asType()).getParameterTypes().get(0);
+        TypeMirror batchType = batchEventType(method);
+        String eventClass = processingEnv.getTypeUtils()
+                .erasure(batchType != null ? batchType : paramType).toString();
+        names.add("\"" + method.getSimpleName() + "\"");
+        eventClasses.add(eventClass + ".class");
+        boolean concurrent = entry.getValue().contains(Annotation.CONCURRENT);
+        concurrents.add(String.valueOf(concurrent));
+        if (!concurrent && batchType == null
+                && !entry.getValue().contains(Annotation.CONFLATE) && mailbox == null)
+            serialMethods++;
+        cases.add((batchType != null ? batchCaseTemplate : caseTemplate)
+                .replace("{number}", String.valueOf(number++))
+                .replace("{StrongBusReceiver}", strongClassName)
+                .replace("{method}", method.getSimpleName())
+                .replace("{eventClass}", eventClass));
+    }
+
+    // The receiver is the only originating element; the processor is isolating.
     JavaFileObject of = processingEnv.getFiler().createSourceFile(
-            pkg + "."+ weakClassName);
+            pkg + "."+ weakClassName, classElement);
     try (PrintWriter out = new PrintWriter(of.openWriter())) {
         // First, the stuff that's common; declares the weak receiver and a few methods.
         out.write(classTemplate
                 .replace("{WeakBusReceiver}", weakClassName)
                 .replace("{StrongBusReceiver}", strongClassName)
-                .replace("{package}", pkg));
+                .replace("{package}", pkg)
+                .replace("{names}", names.toString())
+                .replace("{eventClasses}", eventClasses.toString())
+                .replace("{concurrents}", concurrents.toString())
+                .replace("{cases}", cases.toString())
+                .replace("{serialMethods}", String.valueOf(serialMethods))
+                .replace("{strength}", strength(classElement)));
+        if (mailbox != null)
+            out.write(mailboxTemplate
+                    .replace("{StrongBusReceiver}", strongClassName)
+                    .replace("{StrongBusReceiverClass}", processingEnv.getTypeUtils()
+                            .erasure(classElement.asType()).toString())
+                    .replace("{capacity}", String.valueOf(mailbox.capacity()))
+                    .replace("{overflow}", mailbox.overflow().name()));
         // The trampoline methods to the strong/real event bus.
-        for(Entry<ExecutableElement, Set<Annotation>> entry : methAnnos.entrySet()) {
+        // Each dereferences the weak reference once and calls the strong
+        // receiver directly; nothing is allocated per event.
+        // A dead weak reference queues the weak receiver's removal.
+        // All are @AllowConcurrentEvents, the serial ones take their own lock.
+        // A batched method's trampoline adds the event to its batch,
+        // a conflated method's replaces its pending event.
+        int serial = 0;
+        int batch = 0;
+        int conflate = 0;
+        int mailNumber = 0;
+        for(Entry<ExecutableElement, Set<Annotation>> entry : subscribers) {
             ExecutableElement method = entry.getKey();
             Set<Annotation> annos= entry.getValue();
-            if (!annos.contains(Annotation.SUBSCRIBE))
-                continue;
 
             ExecutableType methodType = (ExecutableType)method.asType();
             TypeMirror paramType = methodType.getParameterTypes().get(0);
-            out.write(methodTemplate
+            TypeMirror batchType = batchEventType(method);
+            if (batchType != null) {
+                WeakSubscribe ws = method.getAnnotation(WeakSubscribe.class);
+                out.write(batchMethodTemplate
+                        .replace("{StrongBusReceiver}", strongClassName)
+                        .replace("{method}", method.getSimpleName())
+                        .replace("{eventType}", batchType.toString())
+                        .replace("{batch}", String.valueOf(batch++))
+                        .replace("{batchSize}", String.valueOf(ws.batchSize()))
+                        .replace("{batchMillis}", String.valueOf(ws.batchMillis())));
+                continue;
+            }
+            if (annos.contains(Annotation.CONFLATE)) {
+                out.write(conflateMethodTemplate
+                        .replace("{StrongBusReceiver}", strongClassName)
+                        .replace("{method}", method.getSimpleName())
+                        .replace("{eventType}", paramType.toString())
+                        .replace("{conflate}", String.valueOf(conflate++)));
+                continue;
+            }
+            if (mailbox != null) {
+                String mail = String.valueOf(mailNumber++);
+                out.write(mailMethodTemplate
+                        .replace("{method}", method.getSimpleName())
+                        .replace("{eventType}", paramType.toString())
+                        .replace("{mail}", mail));
+                mailCases.add(caseTemplate
+                        .replace("{number}", mail)
+                        .replace("{StrongBusReceiver}", strongClassName)
+                        .replace("{method}", method.getSimpleName())
+                        .replace("{eventClass}", processingEnv.getTypeUtils()
+                                .erasure(paramType).toString()));
+                continue;
+            }
+            boolean concurrent = annos.contains(Annotation.CONCURRENT);
+            out.write((concurrent ? methodTemplate : serialMethodTemplate)
+                    .replace("{StrongBusReceiver}", strongClassName)
                     .replace("{method}", method.getSimpleName())
                     .replace("{eventType}", paramType.toString())
-                    .replace("{subscribe}", annos.contains(Annotation.SUBSCRIBE)
-                                              ? "\n    @Subscribe" : "")
-                    .replace("{allowConcurrent}", annos.contains(Annotation.CONCURRENT)
-                                              ? "\n    @AllowConcurrentEvents" : ""));
+                    .replace("{serial}", concurrent ? "" : String.valueOf(serial++)));
         }
+        if (mailbox != null)
+            out.write(deliverMailTemplate
+                    .replace("{StrongBusReceiver}", strongClassName)
+                    .replace("{cases}", mailCases.toString()));
         out.write("}\n");
     }
 }
 
+private void writeManifest()
+{
+    manifest.sort(null);
+    try {
+        FileObject fo = processingEnv.getFiler().createResource(
+                StandardLocation.CLASS_OUTPUT, "", WeakEventBus.MANIFEST,
+                manifestOrigins.toArray(new Element[0]));
+        try (PrintWriter out = new PrintWriter(fo.openWriter())) {
+            for (String line : manifest)
+                out.println(line);
+        }
+    } catch(IOException ex) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Error writing manifest: " + ex.getMessage());
+    }
+}
+
+private void checkMailboxes(Set<? extends Element> classes)
+{
+    for (Element classElement : classes) {
+        WeakMailbox mb = classElement.getAnnotation(WeakMailbox.class);
+        if (mb.capacity() <= 0)
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("%s @WeakMailbox capacity must be positive",
+                    classElement));
+        if (!classesAndMethods.containsKey(classElement)
+                && classElement.getEnclosedElements().stream().noneMatch(
+                        e -> e.getAnnotation(WeakSubscribe.class) != null))
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    String.format("%s @WeakMailbox without @WeakSubscribe methods",
+                    classElement));
+    }
+}
+
+private void checkStrengths(Set<? extends Element> classes)
+{
+    for (Element classElement : classes) {
+        WeakStrength ws = classElement.getAnnotation(WeakStrength.class);
+        if (ws.value() == ReferenceStrength.Kind.WEAK_AFTER_GRACE && ws.graceMillis() <= 0)
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("%s @WeakStrength graceMillis must be positive",
+                    classElement));
+    }
+}
+
+/** @return the expression for the class's reference strength */
+private static String strength(TypeElement classElement)
+{
+    WeakStrength ws = classElement.getAnnotation(WeakStrength.class);
+    if (ws == null || ws.value() == ReferenceStrength.Kind.WEAK)
+        return "ReferenceStrength.WEAK";
+    if (ws.value() == ReferenceStrength.Kind.SOFT)
+        return "ReferenceStrength.SOFT";
+    return "ReferenceStrength.weakAfter(" + ws.graceMillis()
+            + "L, java.util.concurrent.TimeUnit.MILLISECONDS)";
+}
+
+/**
+ * The event type of a valid batched method.
+ * @return the list's element type, or null if not batched
+ */
+private TypeMirror batchEventType(ExecutableElement method)
+{
+    WeakSubscribe ws = method.getAnnotation(WeakSubscribe.class);
+    if (ws == null || ws.batchSize() <= 0 || ws.batchMillis() <= 0
+            || method.getParameters().size() != 1)
+        return null;
+    return listElementType(method.getParameters().get(0).asType());
+}
+
+/**
+ * @return E if the type is java.util.List&lt;E&gt; or
+ *         java.util.List&lt;? extends E&gt;, where E is a class or
+ *         interface type; otherwise null
+ */
+private TypeMirror listElementType(TypeMirror type)
+{
+    if (type.getKind() != TypeKind.DECLARED
+            || !processingEnv.getTypeUtils().erasure(type).toString().equals("java.util.List"))
+        return null;
+    List<? extends TypeMirror> args = ((DeclaredType)type).getTypeArguments();
+    if (args.size() != 1)
+        return null;
+    TypeMirror element = args.get(0);
+    if (element.getKind() == TypeKind.WILDCARD)
+        element = ((WildcardType)element).getExtendsBound();
+    return element != null && element.getKind() == TypeKind.DECLARED ? element : null;
+}
+
 /**
  * Given a strong event bus receiver class name and its package, determine
  * the simple class name of the corresponding weak event bus receiver.
@@ -204,29 +486,160 @@ String classTemplate = """
 package {package};
 import com.google.common.eventbus.Subscribe;
 import com.google.common.eventbus.AllowConcurrentEvents;
-import java.lang.ref.WeakReference;
-import java.util.function.Consumer;
-public class {WeakBusReceiver} {
-    private final WeakReference<{StrongBusReceiver}> ref;
+import com.raelity.lib.eventbus.AbstractWeakReceiver;
+import com.raelity.lib.eventbus.BatchDelivery;
+import com.raelity.lib.eventbus.ConflatingDelivery;
+import com.raelity.lib.eventbus.Mailbox;
+import com.raelity.lib.eventbus.ReferenceStrength;
+import com.raelity.lib.eventbus.WeakMailbox;
+import com.raelity.lib.eventbus.WeakReceiverFactory;
+import com.raelity.lib.eventbus.WeakSubscriberIndex;
+public class {WeakBusReceiver} extends AbstractWeakReceiver<{StrongBusReceiver}> {
+
+    private static final ReferenceStrength STRENGTH = {strength};
 
     public {WeakBusReceiver}({StrongBusReceiver} realBR)
     {
-        this.ref = new WeakReference<>(realBR);
+        super(realBR, {serialMethods}, STRENGTH);
     }
 
-    private void doit(Consumer<{StrongBusReceiver}> doit)
+    /** Create {WeakBusReceiver} without reflection. */
+    public static final class Factory implements WeakReceiverFactory
     {
-        {StrongBusReceiver} br = ref.get();
-        if(br != null)
-            doit.accept(br);
+        @Override
+        public AbstractWeakReceiver<?> create(Object realBR)
+        {
+            return new {WeakBusReceiver}(({StrongBusReceiver})realBR);
+        }
+    }
+
+    /** Subscriber index; does not use {WeakBusReceiver}. */
+    public static final class Index extends WeakSubscriberIndex
+    {
+        public Index()
+        {
+            super(new String[] { {names} },
+                  new Class<?>[] { {eventClasses} },
+                  new boolean[] { {concurrents} });
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected void invoke(int method, Object br, Object ev)
+        {
+            switch(method) {
+{cases}
+            default: throw new IndexOutOfBoundsException(method);
+            }
+        }
     }
 """;
 
+String caseTemplate = ""
+        + "            case {number}: (({StrongBusReceiver})br).{method}(({eventClass})ev); return;";
+
+// DirectWeakEventBus does not batch.
+String batchCaseTemplate = ""
+        + "            case {number}: (({StrongBusReceiver})br).{method}((java.util.List)java.util.List.of(ev)); return;";
+
 String methodTemplate = """
-    {subscribe}{allowConcurrent}
+    
+    @Subscribe
+    @AllowConcurrentEvents
+    public void {method}({eventType} ev)
+    {
+        {StrongBusReceiver} br = strongBR();
+        if(br != null)
+            br.{method}(ev);
+    }
+""";
+
+String batchMethodTemplate = """
+    
+    private final BatchDelivery<{eventType}> batch{batch}
+            = new BatchDelivery<>({batchSize}, {batchMillis}L, this::deliverBatch{batch});
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void {method}$batch({eventType} ev)
+    {
+        batch{batch}.add(ev);
+    }
+
+    private void deliverBatch{batch}(java.util.List<{eventType}> events)
+    {
+        {StrongBusReceiver} br = strongBR();
+        if(br != null)
+            br.{method}(events);
+    }
+""";
+
+String conflateMethodTemplate = """
+    
+    private final ConflatingDelivery<{eventType}> conflate{conflate}
+            = new ConflatingDelivery<>(this::deliverConflated{conflate});
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void {method}({eventType} ev)
+    {
+        conflate{conflate}.post(ev);
+    }
+
+    private void deliverConflated{conflate}({eventType} ev)
+    {
+        {StrongBusReceiver} br = strongBR();
+        if(br != null)
+            br.{method}(ev);
+    }
+""";
+
+String mailboxTemplate = """
+    
+    private final Mailbox mailbox = new Mailbox({capacity}, WeakMailbox.Overflow.{overflow},
+            {StrongBusReceiverClass}.class, this::deliverMail);
+""";
+
+String mailMethodTemplate = """
+    
+    @Subscribe
+    @AllowConcurrentEvents
     public void {method}({eventType} ev)
     {
-        doit((br) -> br.{method}(ev));
+        mailbox.post({mail}, ev);
+    }
+""";
+
+String deliverMailTemplate = """
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void deliverMail(int method, Object ev)
+    {
+        {StrongBusReceiver} br = strongBR();
+        if(br == null)
+            return;
+        switch(method) {
+{cases}
+            default: throw new IndexOutOfBoundsException(method);
+        }
+    }
+""";
+
+String serialMethodTemplate = """
+    
+    @Subscribe
+    @AllowConcurrentEvents
+    public void {method}({eventType} ev)
+    {
+        {StrongBusReceiver} br = strongBR();
+        if(br != null) {
+            lock({serial});
+            try {
+                br.{method}(ev);
+            } finally {
+                unlock({serial});
+            }
+        }
     }
 """;
 }
\ No newline at end of file
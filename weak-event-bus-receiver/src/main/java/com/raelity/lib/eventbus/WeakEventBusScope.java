@@ -0,0 +1,130 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.eventbus.EventBus;
+
+/**
+ * A group of weak receiver registrations that are torn down together.
+ * Created by {@link WeakEventBus#scope()}; typically one per screen.
+ * <p>
+ * Closing the scope unregisters all of its weak receivers in one pass,
+ * grouped by event bus; there is no need to track the receiver and
+ * bus pairs. A receiver that is collected while the scope is open
+ * is reaped as usual. A registration that is unregistered, by the
+ * reaper or explicitly, is dropped from the scope.
+ * <p>
+ * Registering a receiver that is already registered with the bus,
+ * in or out of a scope, does nothing; it is not added to this scope.
+ */
+public final class WeakEventBusScope implements AutoCloseable
+{
+private final Object lock = new Object();
+// guarded by lock; the registrations for each event bus
+private Map<EventBus, Set<Registration>> registrations = newMap();
+// guarded by lock
+private boolean closed;
+/** Registrations not yet unregistered. */
+private final AtomicInteger live = new AtomicInteger();
+
+WeakEventBusScope()
+{
+}
+
+/**
+ * Register a weak receiver for the strong receiver with the event bus,
+ * as {@link WeakEventBus#register}, and add it to this scope.
+ * @param strongBR the event bus receiver to weakly reference
+ * @param eventBus the event bus
+ * @return this scope
+ * @throws IllegalStateException if the scope is closed
+ */
+public WeakEventBusScope register(Object strongBR, EventBus eventBus)
+{
+    synchronized(lock) {
+        if (closed)
+            throw new IllegalStateException("scope is closed");
+        WeakEventBus.register(strongBR, eventBus, this, null);
+    }
+    return this;
+}
+
+/** @return the number of registrations still registered */
+public int size()
+{
+    return live.get();
+}
+
+/**
+ * Unregister all of this scope's weak receivers, grouped by event bus.
+ * Closing again does nothing.
+ */
+@Override
+public void close()
+{
+    Map<EventBus, Set<Registration>> toUnregister;
+    synchronized(lock) {
+        if (closed)
+            return;
+        closed = true;
+        toUnregister = registrations;
+        registrations = Map.of();
+    }
+    // Only what is still this scope's; a receiver may have been
+    // unregistered and registered again outside it.
+    for (Map.Entry<EventBus, Set<Registration>> entry : toUnregister.entrySet()) {
+        EventBus eb = entry.getKey();
+        for (Registration registration : entry.getValue())
+            registration.unregister(eb, this);
+    }
+}
+
+private static Map<EventBus, Set<Registration>> newMap()
+{
+    return new MapMaker().concurrencyLevel(1).weakKeys().makeMap();
+}
+
+/** Called with lock held, from register. */
+void added(Registration registration, EventBus eventBus)
+{
+    registrations.computeIfAbsent(eventBus, k -> new LinkedHashSet<>()).add(registration);
+    live.incrementAndGet();
+}
+
+/**
+ * A registration was unregistered from the event bus,
+ * by close, the reaper or explicitly; drop it.
+ */
+void removed(Registration registration, EventBus eventBus)
+{
+    live.decrementAndGet();
+    synchronized(lock) {
+        if (closed)
+            return;
+        Set<Registration> set = registrations.get(eventBus);
+        if (set != null && set.remove(registration) && set.isEmpty())
+            registrations.remove(eventBus);
+    }
+}
+}
@@ -0,0 +1,67 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Give each weak receiver of the strong event bus receiver class
+ * a bounded mailbox. The weak receiver's subscriber methods only queue
+ * the event, the posting thread does not wait for the strong receiver;
+ * the mailbox is drained, one event at a time and in order, with the
+ * {@link WeakEventBus#virtualThreadExecutor()}. A slow receiver only
+ * slows itself. See {@link Mailbox}.
+ * <p>
+ * Because the mailbox delivers one event at a time,
+ * {@link WeakAllowConcurrentEvents} has no effect. Batched and
+ * {@link WeakConflate} methods do not use the mailbox.
+ * A {@link DirectWeakEventBus} does not use the mailbox.
+ * <p>
+ * Events dropped on overflow are counted by receiver class, see
+ * {@link WeakEventBusMetrics#getMailboxDropsByReceiver()}.
+ * Mailboxes require the annotation processor.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WeakMailbox
+{
+/** @return the most events the mailbox holds */
+int capacity() default 1024;
+
+/** @return what to do with an event when the mailbox is full */
+Overflow overflow() default Overflow.COUNT_AND_DROP;
+
+/** What to do with an event when the mailbox is full. */
+enum Overflow
+{
+    /** The posting thread waits for room. */
+    BLOCK,
+    /** Drop the oldest event in the mailbox to make room. */
+    DROP_OLDEST,
+    /** Drop the posted event. */
+    DROP_NEWEST,
+    /**
+     * Drop the posted event and log a warning, once, when the
+     * mailbox starts dropping; again after it has been emptied.
+     */
+    COUNT_AND_DROP
+}
+}
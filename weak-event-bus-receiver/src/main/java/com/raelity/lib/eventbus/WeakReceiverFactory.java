@@ -0,0 +1,36 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+/**
+ * Create a weak event bus receiver for a strong event bus receiver.
+ * <p>
+ * An implementation is generated, by {@link WeakEventBusProcessor},
+ * as the nested class {@code Factory} of each weak event bus receiver.
+ * {@link WeakEventBus} finds the factory once per strong receiver class;
+ * after that, creating a weak receiver is a direct constructor call.
+ */
+public interface WeakReceiverFactory
+{
+/**
+ * Construct the weak event bus receiver that weak references "strongBR".
+ * @param strongBR the strong event bus receiver
+ * @return the weak event bus receiver
+ */
+AbstractWeakReceiver<?> create(Object strongBR);
+}
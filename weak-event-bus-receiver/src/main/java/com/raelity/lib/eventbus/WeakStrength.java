@@ -0,0 +1,43 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The default {@link ReferenceStrength} with which the weak receivers of
+ * the strong event bus receiver class reference it; without this
+ * annotation it is {@link ReferenceStrength#WEAK}.
+ * <pre>
+ * &#64;WeakStrength(ReferenceStrength.Kind.SOFT)
+ * class ExpensiveView { ... }
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WeakStrength
+{
+/** @return the kind of reference */
+ReferenceStrength.Kind value();
+
+/** @return the grace period for WEAK_AFTER_GRACE, in milliseconds */
+long graceMillis() default 0;
+}
@@ -33,10 +33,28 @@ import java.lang.annotation.Target;
  * <p>
  * Unless also annotated with {@link WeakAllowConcurrentEvents},
  * event subscriber methods
- * will be invoked serially by each event bus that they are registered with.
+ * will be invoked serially; the weak receiver is shared by all the event
+ * buses the receiver is registered with, so the calls are serialized
+ * across them. A batch, or a mailbox, collects the events of all of them.
+ * <p>
+ * A method with a {@code java.util.List<E>} parameter and a positive
+ * {@link #batchSize()} is batched; it subscribes to events of type E.
+ * The generated weak receiver buffers them and delivers a list when
+ * it is full, or when its oldest event has waited {@link #batchMillis()}.
+ * See {@link BatchDelivery}. A {@link DirectWeakEventBus} does not batch;
+ * it delivers lists of one event.
+ * <p>
+ * The annotation is retained at runtime; if the annotation processor
+ * did not run for a class, its weak receiver is generated at runtime.
+ * Batched methods require the annotation processor.
  */
 @Target(ElementType.METHOD)
-@Retention(RetentionPolicy.SOURCE)
+@Retention(RetentionPolicy.RUNTIME)
 public @interface WeakSubscribe
 {
+/** @return the most events in a batch, zero if the method is not batched */
+int batchSize() default 0;
+
+/** @return the longest, in milliseconds, an event waits for its batch */
+long batchMillis() default 10;
 }
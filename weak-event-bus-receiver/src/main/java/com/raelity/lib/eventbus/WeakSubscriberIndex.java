@@ -0,0 +1,84 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The subscriber index of a strong event bus receiver class:
+ * its {@link WeakSubscribe} methods, grouped by event type,
+ * and how to invoke them.
+ * <p>
+ * A subclass is generated by {@link WeakEventBusProcessor} as the
+ * nested class {@code Index} of each weak event bus receiver.
+ * Registering a receiver with {@link DirectWeakEventBus} uses the index;
+ * there is no reflection, no annotation scanning, and the weak receiver
+ * class is not loaded. The generated {@link #invoke} is a switch on the
+ * method number that calls the strong receiver directly.
+ */
+public abstract class WeakSubscriberIndex
+{
+private final List<WeakSubscriberMethod> subscribers;
+private final Map<Class<?>, List<WeakSubscriberMethod>> byEventType;
+
+/**
+ * The arrays are indexed by method number.
+ * @param names method names
+ * @param eventTypes method event types
+ * @param concurrent true if the method allows concurrent events
+ */
+protected WeakSubscriberIndex(String[] names, Class<?>[] eventTypes,
+                              boolean[] concurrent)
+{
+    List<WeakSubscriberMethod> methods = new ArrayList<>(names.length);
+    Map<Class<?>, List<WeakSubscriberMethod>> types = new LinkedHashMap<>();
+    for (int i = 0; i < names.length; i++) {
+        WeakSubscriberMethod method = new WeakSubscriberMethod(
+                this, i, names[i], eventTypes[i], concurrent[i]);
+        methods.add(method);
+        types.computeIfAbsent(eventTypes[i], k -> new ArrayList<>(1)).add(method);
+    }
+    types.replaceAll((k, v) -> List.copyOf(v));
+    this.subscribers = List.copyOf(methods);
+    this.byEventType = Collections.unmodifiableMap(types);
+}
+
+/** @return the subscriber methods, by method number */
+public final List<WeakSubscriberMethod> subscribers()
+{
+    return subscribers;
+}
+
+/** @return event type to its subscriber methods */
+public final Map<Class<?>, List<WeakSubscriberMethod>> byEventType()
+{
+    return byEventType;
+}
+
+/**
+ * Deliver the event to a subscriber method of the strong receiver.
+ * @param method the method number
+ * @param strongBR the strong event bus receiver
+ * @param event the event, an instance of the method's event type
+ */
+protected abstract void invoke(int method, Object strongBR, Object event);
+}
@@ -0,0 +1,78 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.lib.eventbus;
+
+/**
+ * A {@link WeakSubscribe} method of a strong event bus receiver class:
+ * its event type, whether it allows concurrent events,
+ * and how to invoke it.
+ * <p>
+ * These are created by the class's {@link WeakSubscriberIndex}.
+ */
+public final class WeakSubscriberMethod
+{
+private final WeakSubscriberIndex index;
+private final int number;
+private final String name;
+private final Class<?> eventType;
+private final boolean concurrent;
+
+WeakSubscriberMethod(WeakSubscriberIndex index, int number, String name,
+                     Class<?> eventType, boolean concurrent)
+{
+    this.index = index;
+    this.number = number;
+    this.name = name;
+    this.eventType = eventType;
+    this.concurrent = concurrent;
+}
+
+/** @return the method's name */
+public String name()
+{
+    return name;
+}
+
+/** @return the type of event the method receives */
+public Class<?> eventType()
+{
+    return eventType;
+}
+
+/** @return true if annotated with {@link WeakAllowConcurrentEvents} */
+public boolean isConcurrent()
+{
+    return concurrent;
+}
+
+/**
+ * Deliver the event to this method of the strong receiver.
+ * @param strongBR the strong event bus receiver
+ * @param event the event, an instance of the method's event type
+ */
+public void invoke(Object strongBR, Object event)
+{
+    index.invoke(number, strongBR, event);
+}
+
+@Override
+public String toString()
+{
+    return name + "(" + eventType.getName() + ")";
+}
+}
@@ -0,0 +1,92 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.user;
+
+import java.lang.management.ManagementFactory;
+
+import com.google.common.eventbus.EventBus;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+import com.raelity.lib.eventbus.WeakSubscribe;
+
+/**
+ * Measure the bytes allocated by a weak receiver's trampoline method
+ * for each delivered event. The trampoline is expected to allocate nothing.
+ * <p>
+ * For comparison, the bytes allocated for a complete
+ * {@link EventBus#post} to the weak receiver are also reported;
+ * that is mostly Guava's dispatch.
+ */
+public class DeliveryAllocation {
+    static final int WARMUP = 200_000;
+    static final int COUNT = 1_000_000;
+
+    public static class Receiver {
+        long sum;
+        @WeakSubscribe
+        public void onEvent(Long ev) {
+            sum += ev;
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean threadBean
+            = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    private static long allocated() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static double trampoline(WeakEB_DeliveryAllocation_Receiver weakBR,
+                                     Long ev, int count) {
+        long before = allocated();
+        for (int i = 0; i < count; i++)
+            weakBR.onEvent(ev);
+        return (double)(allocated() - before) / count;
+    }
+
+    private static double post(EventBus eventBus, Long ev, int count) {
+        long before = allocated();
+        for (int i = 0; i < count; i++)
+            eventBus.post(ev);
+        return (double)(allocated() - before) / count;
+    }
+
+    @SuppressWarnings({"UseOfSystemOutOrSystemErr", "UnnecessaryBoxing"})
+    public static void main(String[] args) {
+        Long ev = Long.valueOf(1000);
+        Receiver br = new Receiver();
+        WeakEB_DeliveryAllocation_Receiver weakBR
+                = new WeakEB_DeliveryAllocation_Receiver(br);
+
+        trampoline(weakBR, ev, WARMUP);
+        double perDelivery = trampoline(weakBR, ev, COUNT);
+        System.out.printf("trampoline: %.3f bytes/delivery\n", perDelivery);
+
+        EventBus eventBus = new EventBus();
+        WeakEventBus.register(br, eventBus);
+        post(eventBus, ev, WARMUP);
+        System.out.printf("post:       %.3f bytes/post\n", post(eventBus, ev, COUNT));
+
+        if (br.sum != (long)(WARMUP + COUNT) * 2 * ev)
+            throw new IllegalStateException("missed events");
+        // Allow a little slop for anything the measurement itself allocates.
+        if (perDelivery >= 1.0)
+            throw new IllegalStateException("trampoline allocates");
+        System.out.println("OK");
+    }
+}
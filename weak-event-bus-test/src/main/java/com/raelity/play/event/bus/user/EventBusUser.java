@@ -17,15 +17,31 @@
 
 package com.raelity.play.event.bus.user;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.DeadEvent;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
+import com.raelity.lib.eventbus.DirectWeakEventBus;
+import com.raelity.lib.eventbus.ReferenceStrength;
+import com.raelity.lib.eventbus.ShardedEventBus;
 import com.raelity.lib.eventbus.WeakAllowConcurrentEvents;
+import com.raelity.lib.eventbus.WeakConflate;
 import com.raelity.lib.eventbus.WeakEventBus;
+import com.raelity.lib.eventbus.WeakEventBusDiagnostics;
+import com.raelity.lib.eventbus.WeakEventBusScope;
+import com.raelity.lib.eventbus.WeakMailbox;
+import com.raelity.lib.eventbus.WeakStrength;
 import com.raelity.lib.eventbus.WeakSubscribe;
 
 /**
@@ -50,6 +66,10 @@ public class EventBusUser {
         }
     }
 
+    /** No generated weak receiver; created at runtime. */
+    public static class BrRuntime extends BrOne {
+    }
+
     public static class SomeStrongBusReceiver {
         @WeakAllowConcurrentEvents
         @WeakSubscribe
@@ -83,9 +103,503 @@ public class EventBusUser {
         events.clear();
     }
 
+    @SuppressWarnings({"UseOfSystemOutOrSystemErr", "UnnecessaryBoxing"})
+    private static void runtime() {
+        EventBus eb = new EventBus();
+        BrRuntime br = new BrRuntime();
+        WeakEventBus.register(br, eb);
+        eb.post(Long.valueOf(5));
+        eb.post("bar");
+        System.out.println(events.toString());
+        if (events.size() != 2
+                || !events.get(0).equals("mOne1:5")
+                || !events.get(1).equals("mOne2:bar"))
+            throw new IllegalStateException("bad runtime post");
+        events.clear();
+        WeakEventBus.unregister(br, eb);
+    }
+
+    public static class DeadCatcher {
+        @WeakSubscribe
+        public void dead(DeadEvent ev) {
+            events.add("dead:" + ev.getEvent());
+        }
+    }
+
+    @SuppressWarnings({"UseOfSystemOutOrSystemErr", "UnnecessaryBoxing"})
+    private static void direct() {
+        DirectWeakEventBus eb = new DirectWeakEventBus();
+        BrOne br = new BrOne();
+        DeadCatcher dc = new DeadCatcher();
+        eb.register(br);
+        eb.register(dc);
+        eb.post(Long.valueOf(6));
+        eb.post("baz");
+        eb.post(Integer.valueOf(7));
+        System.out.println(events.toString());
+        if (events.size() != 3
+                || !events.get(0).equals("mOne1:6")
+                || !events.get(1).equals("mOne2:baz")
+                || !events.get(2).equals("dead:7"))
+            throw new IllegalStateException("bad direct post");
+        events.clear();
+        eb.unregister(br);
+        eb.post(Long.valueOf(6));
+        if (events.size() != 1 || !events.get(0).equals("dead:6"))
+            throw new IllegalStateException("bad direct unregister");
+        events.clear();
+    }
+
+    public static class BrAny {
+        @WeakSubscribe
+        public void any(Object o) {
+            events.add("any:" + o);
+        }
+    }
+
+    @SuppressWarnings({"UseOfSystemOutOrSystemErr", "UnnecessaryBoxing"})
+    private static void sharded() {
+        ShardedEventBus eb = new ShardedEventBus("sharded", 8);
+        BrOne br = new BrOne();
+        DeadCatcher dc = new DeadCatcher();
+        BrAny any = new BrAny();
+        WeakEventBus.register(br, eb);
+        WeakEventBus.register(dc, eb);
+        WeakEventBus.register(any, eb);
+        // Each subscriber once, whatever shards they are on.
+        eb.post(Long.valueOf(6));
+        eb.post(Integer.valueOf(7));
+        WeakEventBus.unregister(any, eb);
+        eb.post(Integer.valueOf(8));
+        Collections.sort(events);
+        System.out.println(events.toString());
+        if (!events.equals(List.of("any:6", "any:7", "dead:8", "mOne1:6")))
+            throw new IllegalStateException("bad sharded post");
+        events.clear();
+        WeakEventBus.unregister(br, eb);
+        WeakEventBus.unregister(dc, eb);
+    }
+
+    /** Counts overlapping deliveries to the serial method. */
+    public static class BrAsync {
+        final CountDownLatch done;
+        final AtomicInteger inSerial = new AtomicInteger();
+        volatile boolean overlap;
+        BrAsync(int events) { done = new CountDownLatch(events * 2); }
+
+        @WeakSubscribe
+        public void serial(Long l) {
+            if (inSerial.incrementAndGet() != 1)
+                overlap = true;
+            Thread.yield();
+            inSerial.decrementAndGet();
+            done.countDown();
+        }
+        @WeakSubscribe
+        @WeakAllowConcurrentEvents
+        public void concurrent(String s) {
+            done.countDown();
+        }
+    }
+
+    /** No generated weak receiver; created at runtime. */
+    public static class BrAsyncRuntime extends BrAsync {
+        BrAsyncRuntime(int events) { super(events); }
+    }
+
+    private static void async(BrAsync br, int n) throws InterruptedException {
+        EventBus eb = WeakEventBus.newVirtualThreadEventBus("async");
+        WeakEventBus.register(br, eb);
+        for (int i = 0; i < n; i++) {
+            eb.post(Long.valueOf(i));
+            eb.post("s" + i);
+        }
+        if (!br.done.await(30, TimeUnit.SECONDS))
+            throw new IllegalStateException("async events not delivered");
+        if (br.overlap)
+            throw new IllegalStateException("serial method not serialized");
+        WeakEventBus.unregister(br, eb);
+    }
+
+    private static void async() throws InterruptedException {
+        int n = 2000;
+        async(new BrAsync(n), n);
+        async(new BrAsyncRuntime(n), n);
+        System.out.println("async: virtual threads " + WeakEventBus.hasVirtualThreads());
+    }
+
+    private static void scope() throws InterruptedException {
+        EventBus eb1 = new EventBus();
+        EventBus eb2 = new EventBus();
+        BrOne br1 = new BrOne();
+        BrOne br2 = new BrOne();
+        WeakEventBusScope scope = WeakEventBus.scope();
+        scope.register(br1, eb1).register(br1, eb2).register(br2, eb2);
+        eb1.post(Long.valueOf(1));
+        eb2.post(Long.valueOf(2));
+        if (events.size() != 3 || scope.size() != 3)
+            throw new IllegalStateException("bad scope post");
+        events.clear();
+        scope.close();
+        eb1.post(Long.valueOf(1));
+        eb2.post(Long.valueOf(2));
+        if (!events.isEmpty() || scope.size() != 0)
+            throw new IllegalStateException("scope not closed");
+        // Can register again, the scope forgot them.
+        WeakEventBus.register(br1, eb1);
+        eb1.post(Long.valueOf(1));
+        if (events.size() != 1)
+            throw new IllegalStateException("scope close did not forget");
+        WeakEventBus.unregister(br1, eb1);
+        events.clear();
+
+        // Registered again outside the scope, closing it leaves that.
+        scope = WeakEventBus.scope();
+        scope.register(br1, eb1);
+        WeakEventBus.unregister(br1, eb1);
+        WeakEventBus.register(br1, eb1);
+        scope.close();
+        eb1.post(Long.valueOf(1));
+        if (events.size() != 1 || scope.size() != 0)
+            throw new IllegalStateException("scope close took a later registration");
+        WeakEventBus.unregister(br1, eb1);
+        events.clear();
+
+        // All the receivers collected, the scope is empty.
+        scope = WeakEventBus.scope();
+        scope.register(new BrOne(), eb1).register(new BrOne(), eb2);
+        for (int i = 0; i < 50 && scope.size() != 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            WeakEventBus.reap();
+        }
+        if (scope.size() != 0)
+            throw new IllegalStateException("scope not reaped");
+    }
+
+    /** One weak receiver, shared by the event buses, cleaned up once. */
+    @SuppressWarnings({"UseOfSystemOutOrSystemErr", "UnnecessaryBoxing"})
+    private static void shared() throws InterruptedException {
+        EventBus[] buses = { new EventBus("shared-1"), new EventBus("shared-2"),
+                             new EventBus("shared-3") };
+        BrOne br = new BrOne();
+        WeakEventBusScope scope = WeakEventBus.scope();
+        scope.register(br, buses[0]);
+        WeakEventBus.register(br, buses[1]);
+        WeakEventBus.register(br, buses[2]);
+        for (EventBus eb : buses)
+            eb.post(Long.valueOf(1));
+        if (events.size() != 3)
+            throw new IllegalStateException("bad shared post");
+        events.clear();
+        // Only the scope's bus.
+        scope.close();
+        for (EventBus eb : buses)
+            eb.post(Long.valueOf(2));
+        if (events.size() != 2)
+            throw new IllegalStateException("bad shared scope close");
+        events.clear();
+
+        AtomicInteger dead = new AtomicInteger();
+        Object deadCounter = new Object() {
+            @Subscribe
+            public void dead(DeadEvent ev) {
+                dead.incrementAndGet();
+            }
+        };
+        buses[1].register(deadCounter);
+        buses[2].register(deadCounter);
+        br = null;
+        // Both buses unregistered by one cleanup.
+        for (int i = 0; i < 50 && dead.get() != 2; i++) {
+            System.gc();
+            Thread.sleep(10);
+            WeakEventBus.reap();
+            dead.set(0);
+            events.clear();
+            buses[1].post(Long.valueOf(3));
+            buses[2].post(Long.valueOf(3));
+        }
+        Map<String, Long> live = WeakEventBus.metrics().getLiveReceiversByBus();
+        System.out.println("shared: " + dead.get() + " dead events, live " + live);
+        if (dead.get() != 2 || live.containsKey("shared-2"))
+            throw new IllegalStateException("shared not reaped");
+    }
+
+    /** Post until the bus has no receivers, or give up. */
+    private static boolean awaitDead(EventBus eb, AtomicInteger dead)
+            throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            System.gc();
+            Thread.sleep(20);
+            dead.set(0);
+            events.clear();
+            eb.post(Long.valueOf(1));
+            if (dead.get() == 1)
+                return true;
+        }
+        return false;
+    }
+
+    /** The reaper thread keeps unregistering after a failed pass. */
+    @SuppressWarnings({"UseOfSystemOutOrSystemErr", "UnusedAssignment"})
+    private static void reaper() throws InterruptedException {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        EventBus failing = new EventBus("reaper-failing") {
+            @Override
+            public void unregister(Object object) {
+                if (fail.getAndSet(false))
+                    throw new AssertionError("unregister failed");
+                super.unregister(object);
+            }
+        };
+        EventBus eb = new EventBus("reaper");
+        AtomicInteger dead = new AtomicInteger();
+        eb.register(new Object() {
+            @Subscribe
+            public void dead(DeadEvent ev) {
+                dead.incrementAndGet();
+            }
+        });
+        BrOne br = new BrOne();
+        WeakEventBus.register(br, failing);
+        WeakEventBus.register(br, eb);
+        br = null;
+        // The failing bus doesn't stop the rest of the pass.
+        if (!awaitDead(eb, dead) || fail.get())
+            throw new IllegalStateException("reaper did not unregister");
+        br = new BrOne();
+        WeakEventBus.register(br, eb);
+        br = null;
+        if (!awaitDead(eb, dead))
+            throw new IllegalStateException("reaper stopped after a failure");
+        events.clear();
+        System.out.println("reaper: unregisters after a failed pass");
+    }
+
+    /** Receives Longs in batches of up to 3. */
+    public static class BrBatch {
+        final List<List<Long>> batches = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(3);
+
+        @WeakSubscribe(batchSize = 3, batchMillis = 50)
+        public void longs(List<Long> l) {
+            synchronized(batches) {
+                batches.add(l);
+            }
+            done.countDown();
+        }
+    }
+
+    private static void batch() throws InterruptedException {
+        EventBus eb = new EventBus();
+        BrBatch br = new BrBatch();
+        WeakEventBus.register(br, eb);
+        List<Long> longs = new ArrayList<>();
+        for (long i = 0; i < 7; i++)
+            longs.add(i);
+        WeakEventBus.postAll(eb, longs);
+        synchronized(br.batches) {
+            // The full batches are delivered by the posting thread.
+            if (br.batches.size() != 2)
+                throw new IllegalStateException("bad batch size");
+        }
+        if (!br.done.await(5, TimeUnit.SECONDS))
+            throw new IllegalStateException("batch not flushed");
+        System.out.println(br.batches);
+        if (!br.batches.toString().equals("[[0, 1, 2], [3, 4, 5], [6]]"))
+            throw new IllegalStateException("bad batches");
+        WeakEventBus.unregister(br, eb);
+    }
+
+    /** Only wants the latest progress. */
+    public static class BrConflate {
+        final AtomicInteger deliveries = new AtomicInteger();
+        volatile int latest = -1;
+
+        @WeakSubscribe
+        @WeakConflate
+        public void progress(Integer i) {
+            deliveries.incrementAndGet();
+            try {
+                Thread.sleep(5);
+            } catch(InterruptedException ex) {
+            }
+            latest = i;
+        }
+    }
+
+    private static void conflate() throws InterruptedException {
+        EventBus eb = new EventBus();
+        BrConflate br = new BrConflate();
+        WeakEventBus.register(br, eb);
+        int n = 1000;
+        for (int i = 0; i < n; i++)
+            eb.post(Integer.valueOf(i));
+        for (int i = 0; i < 500 && br.latest != n - 1; i++)
+            Thread.sleep(10);
+        System.out.println("conflate: " + br.deliveries + " deliveries");
+        if (br.latest != n - 1 || br.deliveries.get() >= n)
+            throw new IllegalStateException("not conflated");
+        WeakEventBus.unregister(br, eb);
+    }
+
+    /** Throws an Error for the first batch. */
+    public static class BrBatchError {
+        final List<List<Long>> batches = Collections.synchronizedList(new ArrayList<>());
+
+        @WeakSubscribe(batchSize = 2, batchMillis = 1000)
+        public void longs(List<Long> l) {
+            if (l.contains(0L))
+                throw new AssertionError("batch " + l);
+            batches.add(l);
+        }
+    }
+
+    private static void batchError() {
+        EventBus eb = new EventBus();
+        BrBatchError br = new BrBatchError();
+        WeakEventBus.register(br, eb);
+        // Full batches are delivered by the posting thread, Guava
+        // rethrows an Error; it must not stop later deliveries.
+        Error thrown = null;
+        for (long i = 0; i < 4; i++) {
+            try {
+                eb.post(i);
+            } catch(AssertionError ex) {
+                thrown = ex;
+            }
+        }
+        System.out.println("batch error: " + br.batches + " " + thrown);
+        if (!br.batches.toString().equals("[[2, 3]]") || thrown == null)
+            throw new IllegalStateException("not delivered after Error");
+        WeakEventBus.unregister(br, eb);
+    }
+
+    /** A slow receiver with a small mailbox. */
+    @WeakMailbox(capacity = 10, overflow = WeakMailbox.Overflow.DROP_NEWEST)
+    public static class BrMailbox {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Long> received = Collections.synchronizedList(new ArrayList<>());
+
+        @WeakSubscribe
+        public void slow(Long l) {
+            try {
+                release.await();
+            } catch(InterruptedException ex) {
+            }
+            received.add(l);
+        }
+    }
+
+    private static void mailbox() throws InterruptedException {
+        EventBus eb = new EventBus();
+        BrMailbox br = new BrMailbox();
+        WeakEventBus.register(br, eb);
+        long drops = WeakEventBus.metrics().getMailboxDrops();
+        // The posting thread does not wait for the blocked receiver.
+        for (long i = 0; i < 100; i++)
+            eb.post(i);
+        br.release.countDown();
+        for (int i = 0; i < 500 && br.received.size() < 10; i++)
+            Thread.sleep(10);
+        Thread.sleep(50);
+        long dropped = WeakEventBus.metrics().getMailboxDrops() - drops;
+        System.out.println("mailbox: " + br.received.size() + " received, "
+                + dropped + " dropped");
+        // The first event may have been taken before the mailbox filled.
+        if (br.received.size() + dropped != 100 || br.received.size() > 11
+                || !WeakEventBus.metrics().getMailboxDropsByReceiver()
+                        .containsKey(BrMailbox.class.getName()))
+            throw new IllegalStateException("bad mailbox");
+        WeakEventBus.unregister(br, eb);
+    }
+
+    /** Cached by the bus until memory is short. */
+    @WeakStrength(ReferenceStrength.Kind.SOFT)
+    public static class BrSoft {
+        static final AtomicInteger received = new AtomicInteger();
+
+        @WeakSubscribe
+        public void gotChar(Character c) {
+            received.incrementAndGet();
+        }
+    }
+
+    private static void strength() throws InterruptedException {
+        EventBus eb = new EventBus();
+        WeakReference<Object> soft = new WeakReference<>(new BrSoft());
+        WeakEventBus.register(soft.get(), eb);
+        // A grace period keeps an otherwise unreferenced receiver.
+        BrSoft grace = new BrSoft();
+        WeakEventBus.register(grace, eb,
+                ReferenceStrength.weakAfter(200, TimeUnit.MILLISECONDS));
+        grace = null;
+        System.gc();
+        eb.post('a');
+        int during = BrSoft.received.get();
+        Thread.sleep(400);
+        System.gc();
+        eb.post('b');
+        int after = BrSoft.received.get() - during;
+        System.out.println("strength: " + during + " during grace, "
+                + after + " after");
+        if (during != 2 || after != 1 || soft.get() == null)
+            throw new IllegalStateException("bad strength");
+        // The weak receiver is shared by the buses, so is its strength.
+        EventBus eb2 = new EventBus();
+        WeakEventBus.register(soft.get(), eb2, ReferenceStrength.SOFT);
+        try {
+            WeakEventBus.register(soft.get(), eb2, ReferenceStrength.WEAK);
+            throw new IllegalStateException("strength changed");
+        } catch(IllegalArgumentException ex) {
+            System.out.println("strength: " + ex.getMessage());
+        }
+        WeakEventBus.unregister(soft.get(), eb2);
+        WeakEventBus.unregister(soft.get(), eb);
+    }
+
+    private static void diagnostics() throws InterruptedException {
+        WeakEventBus.diagnostics().setSampling(1);
+        EventBus eb = new EventBus();
+        // Leaked, for example by a forgotten listener list.
+        List<BrOne> leaked = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            leaked.add(new BrOne());
+            WeakEventBus.register(leaked.get(i), eb);
+        }
+        Thread.sleep(50);
+        List<WeakEventBusDiagnostics.LongLivedReceivers> report
+                = WeakEventBus.diagnostics().longLivedReceivers(20, TimeUnit.MILLISECONDS);
+        System.out.println("diagnostics: " + report);
+        if (report.size() != 1 || report.get(0).count() != 3
+                || !report.get(0).receiverClass().equals(BrOne.class.getName())
+                || !report.get(0).site().contains("EventBusUser.diagnostics"))
+            throw new IllegalStateException("bad diagnostics");
+        for (BrOne br : leaked)
+            WeakEventBus.unregister(br, eb);
+        if (!WeakEventBus.diagnostics().longLivedReceivers(0, TimeUnit.MILLISECONDS).isEmpty())
+            throw new IllegalStateException("bad diagnostics, unregistered");
+        WeakEventBus.diagnostics().setSampling(0);
+    }
+
     @SuppressWarnings({"UseOfSystemOutOrSystemErr", "UnusedAssignment"})
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         normal();
+        runtime();
+        direct();
+        sharded();
+        async();
+        scope();
+        shared();
+        reaper();
+        batch();
+        batchError();
+        conflate();
+        mailbox();
+        strength();
+        diagnostics();
+        WeakEventBus.metrics().setEnabled(true);
         EventBus eventBus = new EventBus();
         BrOne br = new BrOne();
 
@@ -108,6 +622,29 @@ public class EventBusUser {
         if (!events.isEmpty())
             throw new IllegalStateException("not empty");
         
+        // One receiver on two event buses; unregister from one only.
+
+        EventBus eventBus2 = new EventBus();
+        WeakEventBus.register(br, eventBus);
+        WeakEventBus.register(br, eventBus2);
+        WeakEventBus.register(br, eventBus2); // does nothing
+        eventBus.post(Long.valueOf(3));
+        eventBus2.post(Long.valueOf(4));
+        System.out.println(events.toString());
+        if (events.size() != 2
+                || !events.get(0).equals("mOne1:3")
+                || !events.get(1).equals("mOne1:4"))
+            throw new IllegalStateException("bad post two buses");
+        events.clear();
+
+        WeakEventBus.unregister(br, eventBus);
+        eventBus.post(Long.valueOf(3));
+        eventBus2.post(Long.valueOf(4));
+        if (events.size() != 1 || !events.get(0).equals("mOne1:4"))
+            throw new IllegalStateException("wrong bus unregistered");
+        WeakEventBus.unregister(br, eventBus2);
+        events.clear();
+
         // Now do garbage collect unregister.
 
         WeakEventBus.register(br, eventBus);
@@ -121,6 +658,9 @@ public class EventBusUser {
             throw new IllegalStateException("wrong post");
 
         events.clear();
+        if (WeakEventBus.metrics().getLiveReceivers() != 1
+                || WeakEventBus.metrics().getRegistrations() != 5)
+            throw new IllegalStateException("bad metrics");
 
         br = null;
         // Note that events are delivered without running the garbage colletor.
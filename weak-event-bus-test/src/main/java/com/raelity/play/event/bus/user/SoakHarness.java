@@ -0,0 +1,389 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.user;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+import com.raelity.lib.eventbus.WeakSubscribe;
+
+/**
+ * Soak test: concurrent registration, unregistration, posting
+ * and collection of weak receivers on one event bus.
+ * <pre>
+ * SoakHarness [posters [churners [seconds [gcMillis]]]]
+ * </pre>
+ * Posters post numbered events as fast as they can. Churners register
+ * a new receiver, let it receive for up to a millisecond, and then either
+ * unregister it or drop it for the garbage collector; a thread runs
+ * System.gc() every gcMillis. Checked:
+ * <ul>
+ * <li>no event posted after {@link WeakEventBus#unregister} returns
+ *     is delivered to the receiver</li>
+ * <li>a receiver gets, exactly once, every event whose post started
+ *     after its registration and returned before it was unregistered
+ *     or dropped</li>
+ * <li>after the run every weak receiver is unregistered from the bus</li>
+ * </ul>
+ * Then the churners race registering and unregistering a few receivers
+ * with another bus; afterwards each is unregistered, and an event posted
+ * to that bus must not be delivered.
+ * Reported: sustained throughput, the latency of WeakEventBus.unregister
+ * and, for dropped receivers, the time from drop to unregistration,
+ * which includes waiting for a collection.
+ */
+public class SoakHarness {
+    static final long SETTLE_MILLIS = 10_000;
+
+    /** Numbers the events. */
+    private static final AtomicLong seq = new AtomicLong();
+    /** For each poster, a bound on the event it is posting, else MAX. */
+    private static AtomicLongArray inFlight;
+    private static volatile boolean running = true;
+
+    private static final AtomicLong posts = new AtomicLong();
+    private static final AtomicLong deliveries = new AtomicLong();
+    private static final AtomicLong registrations = new AtomicLong();
+    private static final AtomicLong late = new AtomicLong();
+    private static final AtomicLong missed = new AtomicLong();
+    private static final AtomicLong duplicates = new AtomicLong();
+    private static final AtomicLong deadEvents = new AtomicLong();
+    private static final AtomicLong flips = new AtomicLong();
+
+    private static final Queue<Long> unregisterNanos = new ConcurrentLinkedQueue<>();
+    private static final Queue<Long> cleanupNanos = new ConcurrentLinkedQueue<>();
+    /** Dropped receivers, by id; verified when unregistered. */
+    private static final Map<Long, Log> dropped = new ConcurrentHashMap<>();
+
+    public static class SoakEvent {
+        final long seq;
+
+        SoakEvent(long seq) {
+            this.seq = seq;
+        }
+    }
+
+    public static class SoakReceiver {
+        final Log log;
+
+        SoakReceiver(Log log) {
+            this.log = log;
+        }
+
+        @WeakSubscribe
+        public void onEvent(SoakEvent ev) {
+            log.received(ev.seq);
+        }
+    }
+
+    /** What a receiver got; outlives the receiver. */
+    static class Log {
+        final long id;
+        /** Events after this were posted after registration. */
+        long from;
+        /** Events up to this were posted before unregister or drop. */
+        long to;
+        /** Events after this must not be delivered. */
+        long closed = Long.MAX_VALUE;
+        /** When dropped. */
+        long droppedNanos;
+        private long[] seqs = new long[16];
+        private int count;
+
+        Log(long id) {
+            this.id = id;
+        }
+
+        synchronized void received(long seq) {
+            if (seq > closed)
+                late.incrementAndGet();
+            if (count == seqs.length)
+                seqs = Arrays.copyOf(seqs, count * 2);
+            seqs[count++] = seq;
+            deliveries.incrementAndGet();
+        }
+
+        synchronized void close(long closed) {
+            this.closed = closed;
+            for (int i = 0; i < count; i++)
+                if (seqs[i] > closed)
+                    late.incrementAndGet();
+        }
+
+        synchronized void verify() {
+            long[] sorted = Arrays.copyOf(seqs, count);
+            Arrays.sort(sorted);
+            long expected = Math.max(0, to - from);
+            long got = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i > 0 && sorted[i] == sorted[i - 1])
+                    duplicates.incrementAndGet();
+                else if (sorted[i] > from && sorted[i] <= to)
+                    got++;
+            }
+            missed.addAndGet(expected - got);
+        }
+    }
+
+    /**
+     * Knows the weak receivers, the proxies, registered by the churners;
+     * a dropped receiver's is verified when it is unregistered.
+     */
+    static class SoakBus extends EventBus {
+        static final ThreadLocal<Long> registering = new ThreadLocal<>();
+        final Map<Object, Long> proxies
+                = Collections.synchronizedMap(new IdentityHashMap<>());
+
+        SoakBus() {
+            super("soak");
+        }
+
+        @Override
+        public void register(Object object) {
+            Long id = registering.get();
+            if (id != null)
+                proxies.put(object, id);
+            super.register(object);
+        }
+
+        @Override
+        public void unregister(Object object) {
+            super.unregister(object);
+            Long id = proxies.remove(object);
+            Log log = id == null ? null : dropped.remove(id);
+            if (log != null) {
+                cleanupNanos.add(System.nanoTime() - log.droppedNanos);
+                log.verify();
+            }
+        }
+
+        @Subscribe
+        public void deadEvent(DeadEvent ev) {
+            deadEvents.incrementAndGet();
+        }
+    }
+
+    public static class FlipEvent {
+    }
+
+    public static class FlipReceiver {
+        final AtomicLong received = new AtomicLong();
+
+        @WeakSubscribe
+        public void onEvent(FlipEvent ev) {
+            received.incrementAndGet();
+        }
+    }
+
+    private static void flip(EventBus bus, FlipReceiver[] receivers, long until) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < until) {
+            FlipReceiver br = receivers[random.nextInt(receivers.length)];
+            if (random.nextBoolean())
+                WeakEventBus.register(br, bus);
+            else
+                WeakEventBus.unregister(br, bus);
+            flips.incrementAndGet();
+        }
+    }
+
+    /**
+     * Race register and unregister of the same receivers and bus.
+     * @return true if, after unregistering them all, none receives
+     */
+    private static boolean flip(int threads, long millis) throws InterruptedException {
+        EventBus bus = new EventBus("flip");
+        AtomicLong dead = new AtomicLong();
+        bus.register(new Object() {
+            @Subscribe
+            public void deadEvent(DeadEvent ev) {
+                dead.incrementAndGet();
+            }
+        });
+        FlipReceiver[] receivers = new FlipReceiver[4];
+        for (int i = 0; i < receivers.length; i++)
+            receivers[i] = new FlipReceiver();
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        List<Thread> flippers = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+            flippers.add(start("flipper-" + i, () -> flip(bus, receivers, until)));
+        for (Thread t : flippers)
+            t.join();
+        for (FlipReceiver br : receivers) {
+            WeakEventBus.unregister(br, bus);
+            br.received.set(0);
+        }
+        bus.post(new FlipEvent());
+        long received = 0;
+        for (FlipReceiver br : receivers)
+            received += br.received.get();
+        return received == 0 && dead.get() == 1;
+    }
+
+    /** @return the highest event number for which every post has returned */
+    private static long completed() {
+        long c = seq.get();
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < inFlight.length(); i++)
+            min = Math.min(min, inFlight.get(i));
+        return Math.min(c, min - 1);
+    }
+
+    private static void post(EventBus bus, int poster) {
+        while (running) {
+            // Not more than the number about to be taken.
+            inFlight.set(poster, seq.get() + 1);
+            long s = seq.incrementAndGet();
+            bus.post(new SoakEvent(s));
+            inFlight.set(poster, Long.MAX_VALUE);
+            posts.incrementAndGet();
+        }
+    }
+
+    private static void churn(SoakBus bus, AtomicLong ids) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            Log log = new Log(ids.incrementAndGet());
+            SoakReceiver br = new SoakReceiver(log);
+            SoakBus.registering.set(log.id);
+            WeakEventBus.register(br, bus);
+            SoakBus.registering.set(null);
+            log.from = seq.get();
+            registrations.incrementAndGet();
+
+            LockSupport.parkNanos(random.nextLong(TimeUnit.MILLISECONDS.toNanos(1)));
+
+            log.to = completed();
+            if (random.nextBoolean()) {
+                long start = System.nanoTime();
+                WeakEventBus.unregister(br, bus);
+                unregisterNanos.add(System.nanoTime() - start);
+                log.close(seq.get());
+                log.verify();
+            } else {
+                log.droppedNanos = System.nanoTime();
+                dropped.put(log.id, log);
+            }
+        }
+    }
+
+    private static Thread start(String name, Runnable r) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private static String percentiles(Queue<Long> nanos) {
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        if (sorted.length == 0)
+            return "none";
+        return String.format("p50 %.3f, p90 %.3f, p99 %.3f, max %.3f ms (%d)",
+                             millis(sorted, 0.50), millis(sorted, 0.90),
+                             millis(sorted, 0.99), millis(sorted, 1.0), sorted.length);
+    }
+
+    private static double millis(long[] sorted, double p) {
+        int i = (int)Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, i)] / 1e6;
+    }
+
+    @SuppressWarnings("UseOfSystemOutOrSystemErr")
+    public static void main(String[] args) throws InterruptedException {
+        int posters = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int churners = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long gcMillis = args.length > 3 ? Long.parseLong(args[3]) : 200;
+
+        SoakBus bus = new SoakBus();
+        bus.register(bus);
+        inFlight = new AtomicLongArray(posters);
+        for (int i = 0; i < posters; i++)
+            inFlight.set(i, Long.MAX_VALUE);
+        AtomicLong ids = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < posters; i++) {
+            int poster = i;
+            threads.add(start("poster-" + i, () -> post(bus, poster)));
+        }
+        for (int i = 0; i < churners; i++)
+            threads.add(start("churner-" + i, () -> churn(bus, ids)));
+        Thread gc = start("gc", () -> {
+            while (running) {
+                System.gc();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(gcMillis));
+            }
+        });
+
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running = false;
+        for (Thread t : threads)
+            t.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        gc.join();
+
+        // Everything still registered has been dropped; wait for the reaper.
+        long settleStart = System.nanoTime();
+        while (!bus.proxies.isEmpty()
+                && System.nanoTime() - settleStart < TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS)) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        long dead = deadEvents.get();
+        bus.post(new SoakEvent(0));
+        boolean settled = bus.proxies.isEmpty() && dropped.isEmpty()
+                && deadEvents.get() == dead + 1
+                && WeakEventBus.metrics().getLiveReceiversByBus().getOrDefault("soak", 0L) == 0;
+
+        boolean flipped = flip(Math.max(2, churners),
+                               TimeUnit.SECONDS.toMillis(Math.max(1, seconds / 5)));
+
+        System.out.printf("%d posters, %d churners, %d s, gc every %d ms\n",
+                          posters, churners, seconds, gcMillis);
+        System.out.printf("posts        %10.0f/s\n", posts.get() / elapsed);
+        System.out.printf("deliveries   %10.0f/s\n", deliveries.get() / elapsed);
+        System.out.printf("registers    %10.0f/s\n", registrations.get() / elapsed);
+        System.out.printf("unregister   %s\n", percentiles(unregisterNanos));
+        System.out.printf("drop->unreg  %s\n", percentiles(cleanupNanos));
+        System.out.printf("late %d, missed %d, duplicates %d, settled %s\n",
+                          late.get(), missed.get(), duplicates.get(), settled);
+        System.out.printf("flips %d, unregistered %s\n", flips.get(), flipped);
+        if (late.get() != 0 || missed.get() != 0 || duplicates.get() != 0 || !settled
+                || !flipped)
+            throw new IllegalStateException("soak failed");
+        System.out.println("OK");
+    }
+}
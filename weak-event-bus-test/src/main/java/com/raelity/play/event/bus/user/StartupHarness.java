@@ -0,0 +1,163 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.user;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.EventBus;
+
+import com.raelity.lib.eventbus.WeakEventBus;
+
+/**
+ * Measure the first registration of the {@link StartupReceivers},
+ * each in a fresh JVM, with and without {@link WeakEventBus#warmUp()}.
+ * The warm-up runs while the application does its own initialization,
+ * simulated by a sleep; both modes sleep.
+ * <pre>
+ * StartupHarness [jvm-options]   run both modes, report the medians
+ * StartupHarness cold|warm       one measurement, in micro seconds
+ * StartupHarness classlist       print an AppCDS class list of the
+ *                                generated classes in the manifest
+ * </pre>
+ * For example, with an AppCDS archive; CDS needs a class path of jars.
+ * Appending the output of {@code -XX:DumpLoadedClassList} to the class list
+ * also archives the JDK and library classes.
+ * <pre>
+ * java -cp CP StartupHarness classlist &gt; weak.classlist
+ * java -Xshare:dump -XX:SharedClassListFile=weak.classlist \
+ *      -XX:SharedArchiveFile=weak.jsa -cp CP
+ * java -cp CP StartupHarness -XX:SharedArchiveFile=weak.jsa
+ * </pre>
+ */
+public class StartupHarness {
+    static final int RUNS = 11;
+    static final long APP_INIT_MILLIS = 300;
+
+    @SuppressWarnings("UseOfSystemOutOrSystemErr")
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && (args[0].equals("cold") || args[0].equals("warm"))) {
+            System.out.println(measure(args[0].equals("warm")));
+            return;
+        }
+        if (args.length == 1 && args[0].equals("classlist")) {
+            for (String name : classList())
+                System.out.println(name);
+            return;
+        }
+        List<Long> cold = new ArrayList<>();
+        List<Long> warm = new ArrayList<>();
+        // Alternate, so that any drift in the machine affects both.
+        for (int i = 0; i < RUNS; i++) {
+            cold.add(fork(args, "cold"));
+            warm.add(fork(args, "warm"));
+        }
+        System.out.printf("%d receivers, %d runs %s\n", StartupReceivers.ALL.size(),
+                          RUNS, Arrays.toString(args));
+        System.out.printf("cold: median %6d us\n", median(cold));
+        System.out.printf("warm: median %6d us\n", median(warm));
+    }
+
+    /** @return micro seconds to register all the receivers and post */
+    private static long measure(boolean warm) throws Exception {
+        CompletableFuture<Integer> warmUp = warm ? WeakEventBus.warmUp() : null;
+        if (!warm)
+            WeakEventBus.hasVirtualThreads();
+        Thread.sleep(APP_INIT_MILLIS);
+
+        long start = System.nanoTime();
+        EventBus eventBus = new EventBus();
+        List<Object> receivers = new ArrayList<>();
+        for (Class<?> cls : StartupReceivers.ALL) {
+            Object br = cls.getDeclaredConstructor().newInstance();
+            receivers.add(br);
+            WeakEventBus.register(br, eventBus);
+        }
+        eventBus.post("started");
+        eventBus.post(receivers.size());
+        long elapsed = System.nanoTime() - start;
+
+        if (warm && warmUp.getNow(-1) < StartupReceivers.ALL.size())
+            throw new IllegalStateException("warm up did not finish: " + warmUp.getNow(-1));
+        return TimeUnit.NANOSECONDS.toMicros(elapsed);
+    }
+
+    private static long fork(String[] jvmOptions, String mode)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(jvmOptions));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(StartupHarness.class.getName());
+        command.add(mode);
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String last = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null)
+                last = line;
+        }
+        if (process.waitFor() != 0 || last == null)
+            throw new IllegalStateException(mode + " run failed");
+        return Long.parseLong(last.trim());
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        sorted.sort(null);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    /**
+     * The generated classes of the manifests, and their receivers,
+     * in the class list format: binary names with '/'.
+     */
+    private static List<String> classList() throws IOException {
+        List<String> names = new ArrayList<>();
+        Enumeration<URL> urls = StartupHarness.class.getClassLoader()
+                .getResources(WeakEventBus.MANIFEST);
+        while (urls.hasMoreElements()) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    urls.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] entry = line.trim().split("\\s+");
+                    if (entry.length != 2)
+                        continue;
+                    names.add(entry[1].replace('.', '/'));
+                    for (String nested : new String[] {"", "$Factory", "$Index"})
+                        names.add((entry[0] + nested).replace('.', '/'));
+                }
+            }
+        }
+        return names;
+    }
+}
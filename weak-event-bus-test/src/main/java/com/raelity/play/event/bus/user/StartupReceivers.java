@@ -0,0 +1,319 @@
+/*
+ * Portions created by Ernie Rael are
+ * Copyright (C) 2024 Ernie Rael.  All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public
+ * License Version 1.1 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of
+ * the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS
+ * IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * rights and limitations under the License.
+ *
+ * Contributor(s): Ernie Rael <errael@raelity.com>
+ */
+
+package com.raelity.play.event.bus.user;
+
+import java.util.List;
+
+import com.raelity.lib.eventbus.WeakAllowConcurrentEvents;
+import com.raelity.lib.eventbus.WeakSubscribe;
+
+/**
+ * Receivers for {@link StartupHarness}; standing in for the many
+ * receivers of an application, each registered once at startup.
+ */
+public class StartupReceivers {
+    static final List<Class<?>> ALL = List.of(
+            R00.class,
+            R01.class,
+            R02.class,
+            R03.class,
+            R04.class,
+            R05.class,
+            R06.class,
+            R07.class,
+            R08.class,
+            R09.class,
+            R10.class,
+            R11.class,
+            R12.class,
+            R13.class,
+            R14.class,
+            R15.class,
+            R16.class,
+            R17.class,
+            R18.class,
+            R19.class,
+            R20.class,
+            R21.class,
+            R22.class,
+            R23.class,
+            R24.class,
+            R25.class,
+            R26.class,
+            R27.class,
+            R28.class,
+            R29.class,
+            R30.class,
+            R31.class,
+            R32.class,
+            R33.class,
+            R34.class,
+            R35.class,
+            R36.class,
+            R37.class,
+            R38.class,
+            R39.class,
+            R40.class,
+            R41.class,
+            R42.class,
+            R43.class,
+            R44.class,
+            R45.class,
+            R46.class,
+            R47.class);
+
+    public static class R00 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R01 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R02 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R03 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R04 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R05 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R06 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R07 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R08 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R09 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R10 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R11 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R12 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R13 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R14 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R15 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R16 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R17 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R18 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R19 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R20 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R21 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R22 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R23 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R24 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R25 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R26 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R27 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R28 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R29 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R30 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R31 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R32 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R33 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R34 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R35 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R36 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R37 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R38 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R39 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R40 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R41 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R42 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R43 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R44 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R45 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R46 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+
+    public static class R47 {
+        @WeakSubscribe public void onString(String s) { }
+        @WeakSubscribe @WeakAllowConcurrentEvents public void onInteger(Integer i) { }
+    }
+}